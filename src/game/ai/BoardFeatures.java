@@ -0,0 +1,128 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import game.core.BitBoard;
+import static game.core.BitBoard.NOT_A_FILE;
+import static game.core.BitBoard.NOT_H_FILE;
+
+/**
+ * Positional features computed on whole bitboards at once: mobility,
+ * potential mobility, frontier discs and stable discs. Every feature is a
+ * few shifts and masks followed by a popcount, cheap enough for the leaves
+ * of a search.
+ *
+ * @author filipe
+ */
+public final class BoardFeatures {
+
+    private static final long BORDER = 0xFF818181818181FFL;
+    private static final long EDGE_COLUMNS = 0x8181818181818181L;
+    private static final long EDGE_ROWS = 0xFF000000000000FFL;
+    private static final long FIRST_COLUMN = 0x0101010101010101L;
+
+    private BoardFeatures() {
+    }
+
+    /**
+     * Number of legal moves of {@code player}.
+     */
+    public static int getMobility(long player, long opponent) {
+        return Long.bitCount(BitBoard.getMoves(player, opponent));
+    }
+
+    /**
+     * Empty squares next to an opponent disc: where {@code player} may get
+     * moves later on.
+     */
+    public static int getPotentialMobility(long player, long opponent) {
+        return Long.bitCount(getNeighbours(opponent) & ~(player | opponent));
+    }
+
+    /**
+     * Discs of {@code player} next to an empty square.
+     */
+    public static int getFrontier(long player, long opponent) {
+        return Long.bitCount(player & getNeighbours(~(player | opponent)));
+    }
+
+    public static int getStableCount(long player, long opponent) {
+        return Long.bitCount(getStableDiscs(player, opponent));
+    }
+
+    /**
+     * Discs of {@code player} that can never be flipped, conservatively: a
+     * disc is stable when, along each of its four lines, the line is full,
+     * or one of its two neighbours on it is off the board or a stable disc
+     * of the same colour. The set grows from the corners until it settles.
+     */
+    public static long getStableDiscs(long player, long opponent) {
+        long filled = player | opponent;
+        long horizontal = getFullRows(filled) | EDGE_COLUMNS;
+        long vertical = getFullColumns(filled) | EDGE_ROWS;
+        long diagonal = getFullDiagonals(filled, 9, NOT_A_FILE, NOT_H_FILE) | BORDER;
+        long antiDiagonal = getFullDiagonals(filled, 7, NOT_H_FILE, NOT_A_FILE) | BORDER;
+        long stable = 0;
+        long previous;
+        do {
+            previous = stable;
+            long candidates = player
+                    & (horizontal | ((stable << 1) & NOT_A_FILE) | ((stable >>> 1) & NOT_H_FILE))
+                    & (vertical | (stable << 8) | (stable >>> 8))
+                    & (diagonal | ((stable << 9) & NOT_A_FILE) | ((stable >>> 9) & NOT_H_FILE))
+                    & (antiDiagonal | ((stable << 7) & NOT_H_FILE) | ((stable >>> 7) & NOT_A_FILE));
+            stable |= candidates;
+        } while (stable != previous);
+        return stable;
+    }
+
+    /**
+     * Every square next to one of {@code bits}, in any of the eight
+     * directions.
+     */
+    public static long getNeighbours(long bits) {
+        long sideways = ((bits << 1) & NOT_A_FILE) | ((bits >>> 1) & NOT_H_FILE);
+        long row = bits | sideways;
+        return sideways | (row << 8) | (row >>> 8);
+    }
+
+    private static long getFullRows(long filled) {
+        long full = filled & (filled >>> 1);
+        full &= full >>> 2;
+        full &= full >>> 4;
+        return (full & FIRST_COLUMN) * 0xFF;
+    }
+
+    private static long getFullColumns(long filled) {
+        long full = filled & (filled >>> 8);
+        full &= full >>> 16;
+        full &= full >>> 32;
+        return (full & 0xFF) * FIRST_COLUMN;
+    }
+
+    /**
+     * Squares on full diagonals: empty squares are spread both ways along
+     * the diagonal with three doubling shifts, and whatever they don't
+     * reach is on a line without empties.
+     */
+    private static long getFullDiagonals(long filled, int shift, long upMask, long downMask) {
+        long up = ~filled;
+        long mask = upMask;
+        up |= mask & (up << shift);
+        mask &= mask << shift;
+        up |= mask & (up << (2 * shift));
+        mask &= mask << (2 * shift);
+        up |= mask & (up << (4 * shift));
+        long down = ~filled;
+        mask = downMask;
+        down |= mask & (down >>> shift);
+        mask &= mask >>> shift;
+        down |= mask & (down >>> (2 * shift));
+        mask &= mask >>> (2 * shift);
+        down |= mask & (down >>> (4 * shift));
+        return ~(up | down);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import game.core.SearchBoard;
+
+/**
+ * Looks the leaf up in an {@link EvaluationCache} before asking the wrapped
+ * evaluator, and stores what the evaluator answers. Probes and hits are
+ * counted locally and handed to the cache every {@code FLUSH_MASK + 1}
+ * probes.
+ *
+ * @author filipe
+ */
+public class CachedEvaluator implements Evaluator {
+
+    private static final int FLUSH_MASK = 1023;
+
+    private final Evaluator evaluator;
+    private final EvaluationCache cache;
+    private int probes;
+    private int hits;
+
+    public CachedEvaluator(Evaluator evaluator, EvaluationCache cache) {
+        this.evaluator = evaluator;
+        this.cache = cache;
+    }
+
+    @Override
+    public int evaluate(long player, long opponent) {
+        return evaluator.evaluate(player, opponent);
+    }
+
+    @Override
+    public int evaluate(SearchBoard board) {
+        long key = board.getHash();
+        int score = cache.probe(key);
+        if (score == EvaluationCache.MISS) {
+            score = evaluator.evaluate(board.getPlayer(), board.getOpponent());
+            cache.store(key, score);
+        } else {
+            hits++;
+        }
+        if ((++probes & FLUSH_MASK) == 0) {
+            cache.addCounts(probes, hits);
+            probes = 0;
+            hits = 0;
+        }
+        return score;
+    }
+}
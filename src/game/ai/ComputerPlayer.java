@@ -6,94 +6,435 @@
 package game.ai;
 
 import game.config.AISettings;
+import game.core.BitBoard;
 import game.core.ReversiGame;
 import game.core.ReversiGameEvent;
+import game.core.Zobrist;
+import static game.ai.TranspositionTable.NO_MOVE;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import util.Coordinate2D;
 import util.RunningTools;
 
 /**
+ * The computer side of a game. Every search, whether a move or pondering,
+ * is a task on a single worker thread, so only one search per game is ever
+ * live, and each task is a {@link Future} that can be cancelled: its search
+ * is stopped, which the engines notice within a few thousand nodes, and a
+ * cancelled move is never played.
+ *
+ * While it searches a move, the progress of the search is kept as the
+ * latest {@link SearchProgress}; a display polls it at its own pace, so the
+ * search never waits on it and bursts of iterations cost one write each.
+ *
+ * After each move it ponders: it guesses the human's reply and searches the
+ * position that reply leaves, from its own side. When the human plays the
+ * guess, that search is not cancelled but becomes the move search: it runs
+ * until the time budget of the turn is spent, counted from the reply, and
+ * its move is played.
  *
  * @author filipe
  */
-public class ComputerPlayer implements Runnable {
-    
-    private ReversiGame actualGame;
-    private ReversiGameEvent currentEvent;
-    private boolean myTurn;
-    private boolean running;
-    private char myColor;
+public class ComputerPlayer {
+
+    private static final int PREDICTION_DEPTH = 4;
+
+    /**
+     * A move or a ponder search, with the flag that cancels it. A move that
+     * adopts a ponder search cancels that search along with itself.
+     */
+    private class SearchTask implements Runnable {
+
+        private final ReversiGameEvent turn;
+        private final BitBoard ponderBoard;
+        private final long created;
+        private SearchTask adopted;
+        private volatile boolean cancelled;
+        private volatile boolean timeUp;
+        private volatile long hitTime;
+        private volatile int ponderMove = NO_MOVE;
+        private volatile SearchProgress ponderProgress;
+        private volatile IterativeDeepeningSearch search;
+
+        private SearchTask(ReversiGameEvent turn) {
+            this(turn, null);
+        }
+
+        private SearchTask(ReversiGameEvent turn, BitBoard ponderBoard) {
+            this.turn = turn;
+            this.ponderBoard = ponderBoard;
+            created = System.nanoTime();
+        }
+
+        private void cancel() {
+            cancelled = true;
+            stopSearch();
+            if (adopted != null) {
+                adopted.cancel();
+            }
+        }
+
+        /**
+         * Ends a ponder search that has become the move search, keeping the
+         * move of its deepest finished iteration.
+         */
+        private void expire() {
+            timeUp = true;
+            stopSearch();
+        }
+
+        private void stopSearch() {
+            IterativeDeepeningSearch running = search;
+            if (running != null) {
+                running.stop();
+            }
+        }
+
+        private void setSearch(IterativeDeepeningSearch search) {
+            this.search = search;
+            if (cancelled || timeUp) {
+                search.stop();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            if (turn != null) {
+                makeMove(this);
+            } else {
+                ponder(this);
+            }
+        }
+    }
+
+    private final ReversiGame actualGame;
+    private final char myColor;
+    private final ExecutorService worker;
+    private final ScheduledExecutorService clock;
     private AISettings mySettings;
-    
+    private TranspositionTable table;
+    private EvaluationCache evaluationCache;
+    private ExecutorService threadPool;
+    private SearchTask activeTask;
+    private Future<?> activeResult;
+    private ReversiGameEvent pendingTurn;
+    private volatile SearchProgress progress;
+    private SearchTask ponderTask;
+
     public ComputerPlayer(char myColor, ReversiGame actualGame, AISettings settings) {
         this.myColor = myColor;
         this.actualGame = actualGame;
-        this.running = true;
-        currentEvent = null;
         mySettings = settings;
+        table = new TranspositionTable(settings.getHashSizeMB());
+        evaluationCache = new EvaluationCache(settings.getEvalCacheSizeMB());
+        threadPool = SearchEngines.createThreadPool(settings);
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AI worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        clock = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AI clock");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
-    
-    private void makeMove() {
-        if (currentEvent.isGamePlayable()) {
-            if (currentEvent.isTurnPlayable()) {
-                Coordinate2D cellToPlay = chooseMovement();
-                if (cellToPlay != null) actualGame.put(cellToPlay.x, cellToPlay.y, myColor);
-                else actualGame.skip(myColor);
-            } else {
-                actualGame.skip(myColor);
-            }
+
+    /**
+     * Hands the turn to the worker. When the human played the reply the
+     * ponder search expected, that search goes on as the move search and the
+     * move queued behind it plays its result; otherwise it is cancelled.
+     */
+    public synchronized void giveTurn(ReversiGameEvent evt) {
+        pendingTurn = evt;
+        SearchTask pondered = ponderTask;
+        if (pondered == null || pondered.cancelled) {
+            submit(new SearchTask(evt));
+        } else if (!pondered.ponderBoard.equals(actualGame.getBoard())) {
+            System.out.println("Ponder miss");
+            submit(new SearchTask(evt));
+        } else {
+            System.out.println("Ponder hit");
+            adoptPonderSearch(pondered, new SearchTask(evt));
+        }
+    }
+
+    /**
+     * Aborts whatever the computer is searching, forgets its turn and waits
+     * until the worker is idle, so the game can be changed safely. Used when
+     * the game restarts.
+     */
+    public void cancelSearch() {
+        synchronized (this) {
+            cancelActiveTask();
+            pendingTurn = null;
         }
+        awaitIdle();
+        progress = null;
     }
-    
+
+    /**
+     * Aborts the running search, swaps the settings and tables while the
+     * worker is idle, then searches the pending turn again, if any, with the
+     * new settings.
+     */
     public void updateSettings(AISettings settings) {
+        ReversiGameEvent turn;
+        synchronized (this) {
+            cancelActiveTask();
+            turn = pendingTurn;
+        }
+        awaitIdle();
+        progress = null;
         mySettings = settings;
         mySettings.calculateBiasMatrix();
+        table = new TranspositionTable(settings.getHashSizeMB());
+        evaluationCache = new EvaluationCache(settings.getEvalCacheSizeMB());
+        if (threadPool != null) {
+            threadPool.shutdown();
+        }
+        threadPool = SearchEngines.createThreadPool(settings);
+        if (turn != null) {
+            giveTurn(turn);
+        }
     }
-    
+
     public AISettings getSettings() {
         return mySettings;
     }
-    
-    private Coordinate2D chooseMovement() {
+
+    /**
+     * Whether the computer has a turn it hasn't played yet.
+     */
+    public synchronized boolean isThinking() {
+        return pendingTurn != null;
+    }
+
+    /**
+     * Progress of the move being searched, or null when the computer is not
+     * thinking about a move of its own. Safe to call from any thread.
+     */
+    public SearchProgress getProgress() {
+        return progress;
+    }
+
+    private void submit(SearchTask task) {
+        cancelActiveTask();
+        activeTask = task;
+        activeResult = worker.submit(task);
+    }
+
+    private void cancelActiveTask() {
+        if (activeTask != null) {
+            activeTask.cancel();
+            activeResult.cancel(true);
+            progress = null;
+            activeTask = null;
+            activeResult = null;
+        }
+        ponderTask = null;
+    }
+
+    // The move task is queued behind the ponder task, so it runs once the
+    // ponder search has returned, at once when that search was already done.
+    // Near the end the move search would also run the endgame solver, which
+    // pondering doesn't, so there the move is searched again instead, with
+    // the table the ponder search filled.
+    private void adoptPonderSearch(SearchTask pondered, SearchTask moveTask) {
+        ponderTask = null;
+        if (mySettings.getTimeBudget() > 0
+                && pondered.ponderBoard.getEmptyCount() <= mySettings.getEndgameEmpties()) {
+            submit(moveTask);
+            return;
+        }
+        moveTask.adopted = pondered;
+        pondered.hitTime = moveTask.created;
+        SearchProgress reached = pondered.ponderProgress;
+        progress = (reached == null) ? (new SearchProgress(0, 0, moveTask.created))
+                : (new SearchProgress(reached.getDepth(), reached.getNodeCount(), moveTask.created));
+        if (mySettings.getTimeBudget() > 0) {
+            clock.schedule(pondered::expire, mySettings.getTimeBudget(), TimeUnit.MILLISECONDS);
+        }
+        activeTask = moveTask;
+        activeResult = worker.submit(moveTask);
+    }
+
+    // The worker runs one task at a time, so an empty task only finishes
+    // once everything submitted before it has returned.
+    private void awaitIdle() {
+        try {
+            worker.submit(() -> {
+            }).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            ex.getCause().printStackTrace();
+        }
+    }
+
+    private void makeMove(SearchTask task) {
+        long start = task.created;
+        ReversiGameEvent turn = task.turn;
+        synchronized (this) {
+            if (task.cancelled) {
+                return;
+            }
+            if (!turn.isGamePlayable()) {
+                pendingTurn = null;
+                return;
+            }
+            if (task.adopted == null) {
+                progress = new SearchProgress(0, 0, start);
+            }
+        }
+        Coordinate2D cellToPlay = (turn.isTurnPlayable()) ? (chooseMovement(task)) : (null);
+        waitForMinimumMoveTime(start);
+        synchronized (this) {
+            if (task.cancelled) {
+                return;
+            }
+            pendingTurn = null;
+            progress = null;
+        }
+        if (cellToPlay != null) actualGame.put(cellToPlay.x, cellToPlay.y, myColor);
+        else actualGame.skip(myColor);
+        startPondering(task);
+    }
+
+    /**
+     * Sleeps what is left of the minimum move time, so a quick answer is
+     * still on screen long enough for the human to follow.
+     */
+    private void waitForMinimumMoveTime(long start) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long remaining = mySettings.getMinimumMoveTime() - elapsed;
+        if (remaining > 0) {
+            RunningTools.holdOn(remaining);
+        }
+    }
+
+    /**
+     * Queues a search of the position the human's expected reply leaves,
+     * behind the move just played. Nothing is pondered when the computer
+     * would have to pass there, the game would be over or the book has the
+     * move.
+     */
+    private void startPondering(SearchTask moveTask) {
+        BitBoard humanBoard;
+        long humanKey;
+        char human;
+        synchronized (this) {
+            if (!mySettings.isPonderEnabled() || mySettings.getMaxTreeLevel() == 0 || actualGame.isFinished()
+                    || actualGame.getCurrentPlayer() == myColor || activeTask != moveTask) {
+                return;
+            }
+            humanBoard = actualGame.getBoard();
+            humanKey = actualGame.getZobristKey();
+            human = actualGame.getCurrentPlayer();
+        }
+        int reply = predictReply(humanBoard, humanKey, human);
+        BitBoard expected = (reply == NO_MOVE) ? (humanBoard.pass()) : (humanBoard.play(reply));
+        if (expected.getMoves() == 0 || isInBook(Zobrist.hash(expected, myColor))) {
+            return;
+        }
+        synchronized (this) {
+            if (activeTask != moveTask || moveTask.cancelled) {
+                return;
+            }
+            SearchTask task = new SearchTask(null, expected);
+            submit(task);
+            ponderTask = task;
+        }
+    }
+
+    // The search that chose the move usually left the reply it expects in the
+    // table; after a book move there is none, and a shallow search guesses.
+    private int predictReply(BitBoard humanBoard, long humanKey, char human) {
+        if (humanBoard.getMoves() == 0) {
+            return NO_MOVE;
+        }
+        long entry = table.probe(humanKey);
+        if (entry != 0) {
+            int move = TranspositionTable.getMove(entry);
+            if (move < 64 && humanBoard.isLegal(move)) {
+                return move;
+            }
+        }
+        SearchEngine engine = SearchEngines.create(humanBoard, mySettings, human, table, evaluationCache, null);
+        engine.search(Math.min(PREDICTION_DEPTH, mySettings.getMaxTreeLevel()), SearchEngine.NO_DEADLINE);
+        return engine.getBestMove();
+    }
+
+    private void ponder(SearchTask task) {
+        IterativeDeepeningSearch search = new IterativeDeepeningSearch(task.ponderBoard, mySettings, myColor,
+                table, evaluationCache, threadPool);
+        search.setProgressListener(snapshot -> {
+            task.ponderProgress = snapshot;
+            if (task.hitTime != 0 && !task.cancelled) {
+                progress = new SearchProgress(snapshot.getDepth(), snapshot.getNodeCount(), task.hitTime);
+            }
+        });
+        task.setSearch(search);
+        task.ponderMove = search.ponder();
+    }
+
+    private Coordinate2D chooseMovement(SearchTask task) {
         if (mySettings.getMaxTreeLevel() == 0) {
-            return getRandomMovement(currentEvent);
+            return getRandomMovement(task.turn);
+        }
+        Coordinate2D bookMovement = getBookMovement();
+        if (bookMovement != null) {
+            return bookMovement;
+        } else if (task.adopted != null && task.adopted.ponderMove != NO_MOVE) {
+            int square = task.adopted.ponderMove;
+            return new Coordinate2D(BitBoard.row(square), BitBoard.column(square));
         } else {
-            ReversiGame gameCopy = new ReversiGame(actualGame.getMatrixCopy(), myColor);
-            return new ReversiMiniMax(gameCopy, mySettings, myColor).getBestMovement();
+            IterativeDeepeningSearch search = new IterativeDeepeningSearch(actualGame.getBoard(), mySettings, myColor,
+                    table, evaluationCache, threadPool);
+            search.setProgressListener(snapshot -> {
+                if (!task.cancelled) {
+                    progress = snapshot;
+                }
+            });
+            task.setSearch(search);
+            return search.getBestMovement();
+        }
+    }
+
+    // The book holds the moves of deep timed searches, far stronger than a
+    // fixed-depth level is meant to play, so only timed levels use it, like
+    // the endgame solver.
+    private Coordinate2D getBookMovement() {
+        if (!isInBook(actualGame.getZobristKey())) {
+            return null;
+        }
+        long entry = OpeningBook.getInstance().probe(actualGame.getZobristKey());
+        int square = OpeningBook.getMove(entry);
+        // A key collision could point at an illegal square; search instead.
+        if (square >= 64 || !actualGame.getBoard().isLegal(square)) {
+            return null;
         }
+        System.out.println("Book move, score " + OpeningBook.getScore(entry));
+        return new Coordinate2D(BitBoard.row(square), BitBoard.column(square));
     }
-    
+
+    private boolean isInBook(long key) {
+        return mySettings.isOpeningBookEnabled() && mySettings.getTimeBudget() > 0
+                && OpeningBook.getInstance().probe(key) != OpeningBook.NOT_FOUND;
+    }
+
     private Coordinate2D getRandomMovement(ReversiGameEvent evt) {
         Random rnd = new Random();
         int element = rnd.nextInt(evt.getHints().size());
         return evt.getHints().get(element);
-        
-    }
-    
-    public void giveTurn(ReversiGameEvent evt) {
-        myTurn = true;
-        currentEvent = evt;
-    }
-    
-    public void stop() {
-        running = false;
-    }
-    
-    public void start() {
-        running = true;
-    }
-
-    @Override
-    public void run() {
-        System.err.println("AI STARTED!");
-        while(!actualGame.isFinished() && running) {
-            RunningTools.holdOn(50);
-            if (myTurn) {
-                RunningTools.holdOn(1000);
-                makeMove();
-                myTurn = false;
-            }
-        }
-        System.err.println("AI FINISHED!");
+
     }
 }
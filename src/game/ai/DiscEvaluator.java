@@ -0,0 +1,19 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+/**
+ * The original evaluation: plain disc difference.
+ *
+ * @author filipe
+ */
+public class DiscEvaluator implements Evaluator {
+
+    @Override
+    public int evaluate(long player, long opponent) {
+        return Long.bitCount(player) - Long.bitCount(opponent);
+    }
+}
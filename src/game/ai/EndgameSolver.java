@@ -0,0 +1,366 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import game.core.BitBoard;
+import game.core.SearchBoard;
+import static game.ai.TranspositionTable.*;
+
+/**
+ * Perfect-play search to the end of the game. Scores are final disc
+ * differences from the point of view of the side to move; square biases
+ * play no part, since the result is known exactly.
+ *
+ * Moves are tried fastest-first (fewest replies for the opponent) while
+ * many squares are empty, and in odd-parity quadrants first near the end.
+ * The last four empties are solved by dedicated routines that work on the
+ * raw masks and skip move generation, hashing and ordering altogether.
+ *
+ * @author filipe
+ */
+public class EndgameSolver {
+
+    public static final String EXACT = "exact";
+    public static final String WIN_LOSS_DRAW = "wld";
+
+    private static final int POSITIVE_INFINITY = 65;
+    private static final int NEGATIVE_INFINITY = -65;
+    private static final int TIME_CHECK_MASK = 4095;
+    private static final int FASTEST_FIRST_EMPTIES = 7;
+    private static final int HASH_EMPTIES = 10;
+    private static final int MAX_PLY = 64;
+    // Keeps solver entries apart from the heuristic search's in a shared table.
+    private static final long ENDGAME_KEY = 0x3C6EF372FE94F82BL;
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final long[] QUADRANTS = {
+        0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+
+    private final SearchBoard board;
+    private final TranspositionTable table;
+    private final int[][] moveLists;
+    private final int[][] moveKeys;
+    private long deadline;
+    private long nodes;
+    private boolean aborted;
+    private volatile boolean stopRequested;
+    private int bestMove;
+
+    public EndgameSolver(BitBoard gameState, char perspective, TranspositionTable table) {
+        this.table = table;
+        board = new SearchBoard(gameState, perspective);
+        moveLists = new int[MAX_PLY][64];
+        moveKeys = new int[MAX_PLY][64];
+        bestMove = NO_MOVE;
+    }
+
+    /**
+     * Solves the position and returns the exact final disc difference or,
+     * with {@code winLossDraw}, only its sign as -1, 0 or 1.
+     */
+    public int solve(boolean winLossDraw, long deadline) {
+        this.deadline = deadline;
+        aborted = false;
+        bestMove = NO_MOVE;
+        if (winLossDraw) {
+            return Integer.signum(getBestScore(0, -1, 1));
+        }
+        return getBestScore(0, NEGATIVE_INFINITY, POSITIVE_INFINITY);
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    private int getBestScore(int ply, int alpha, int beta) {
+        if ((++nodes & TIME_CHECK_MASK) == 0 && (stopRequested || System.nanoTime() > deadline)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        int empties = board.getEmptyCount();
+        if (empties <= 4 && ply > 0) {
+            return solveLastEmpties(board.getPlayer(), board.getOpponent(), empties, alpha, beta);
+        }
+        long possibleMoves = board.getMoves();
+        if (possibleMoves == 0) {
+            if (BitBoard.getMoves(board.getOpponent(), board.getPlayer()) == 0) {
+                return board.getDiscDifference();
+            }
+            board.makePass();
+            int score = -getBestScore(ply + 1, -beta, -alpha);
+            board.undoMove();
+            return score;
+        }
+        long hash = board.getHash() ^ ENDGAME_KEY;
+        int hashMove = NO_MOVE;
+        if (empties >= HASH_EMPTIES) {
+            long entry = table.probe(hash);
+            if (entry != 0) {
+                hashMove = getMove(entry);
+                int score = getScore(entry);
+                int bound = getBound(entry);
+                if (ply > 0 && (bound == BOUND_EXACT || (bound == BOUND_LOWER && score >= beta)
+                        || (bound == BOUND_UPPER && score <= alpha))) {
+                    return score;
+                }
+            }
+        }
+        int[] orderedMoves = moveLists[ply];
+        int moveCount = orderMoves(possibleMoves, hashMove, empties, orderedMoves, moveKeys[ply]);
+        int value = NEGATIVE_INFINITY;
+        int nodeBestMove = NO_MOVE;
+        for (int i = 0; i < moveCount; i++) {
+            int square = orderedMoves[i];
+            int lowerBound = Math.max(alpha, value);
+            int moveScore;
+            board.makeMove(square);
+            if (i == 0) {
+                moveScore = -getBestScore(ply + 1, -beta, -lowerBound);
+            } else {
+                moveScore = -getBestScore(ply + 1, -lowerBound - 1, -lowerBound);
+                if (moveScore > lowerBound && moveScore < beta) {
+                    moveScore = -getBestScore(ply + 1, -beta, -lowerBound);
+                }
+            }
+            board.undoMove();
+            if (moveScore > value) {
+                value = moveScore;
+                nodeBestMove = square;
+            }
+            if (value >= beta) {
+                break;
+            }
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (empties >= HASH_EMPTIES) {
+            int bound = (value >= beta) ? (BOUND_LOWER) : ((value <= alpha) ? (BOUND_UPPER) : (BOUND_EXACT));
+            table.store(hash, empties, bound, value, nodeBestMove);
+        }
+        if (ply == 0) bestMove = nodeBestMove;
+        return value;
+    }
+
+    /**
+     * Fills {@code orderedMoves} best first and returns how many there are.
+     * Far from the end, moves that leave the opponent fewest replies come
+     * first; closer to it, moves in quadrants with an odd number of empties.
+     * Corners win ties in both cases and the hash move always leads.
+     */
+    private int orderMoves(long moves, int hashMove, int empties, int[] orderedMoves, int[] keys) {
+        long player = board.getPlayer();
+        long opponent = board.getOpponent();
+        long oddQuadrants = getOddQuadrants(~(player | opponent));
+        int count = 0;
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long bit = moves & -moves;
+            moves ^= bit;
+            int key;
+            if (square == hashMove) {
+                key = Integer.MIN_VALUE;
+            } else if (empties >= FASTEST_FIRST_EMPTIES) {
+                long flips = BitBoard.getFlips(player, opponent, square);
+                key = 4 * Long.bitCount(BitBoard.getMoves(opponent ^ flips, player | flips | bit));
+                key -= ((bit & CORNERS) != 0) ? (2) : (0);
+                key -= ((bit & oddQuadrants) != 0) ? (1) : (0);
+            } else {
+                key = ((bit & oddQuadrants) != 0) ? (0) : (2);
+                key -= ((bit & CORNERS) != 0) ? (1) : (0);
+            }
+            int i = count++;
+            while (i > 0 && keys[i - 1] > key) {
+                keys[i] = keys[i - 1];
+                orderedMoves[i] = orderedMoves[i - 1];
+                i--;
+            }
+            keys[i] = key;
+            orderedMoves[i] = square;
+        }
+        return count;
+    }
+
+    private static long getOddQuadrants(long empty) {
+        long odd = 0;
+        for (long quadrant : QUADRANTS) {
+            if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+                odd |= quadrant;
+            }
+        }
+        return odd;
+    }
+
+    /**
+     * Picks the unrolled routine for one to four empties, with the empty
+     * squares listed odd-parity quadrants first. A full board is simply
+     * counted.
+     */
+    private int solveLastEmpties(long player, long opponent, int empties, int alpha, int beta) {
+        if (empties == 0) {
+            return Long.bitCount(player) - Long.bitCount(opponent);
+        }
+        long empty = ~(player | opponent);
+        long oddQuadrants = getOddQuadrants(empty);
+        long first = empty & oddQuadrants;
+        long second = empty & ~oddQuadrants;
+        int x1 = nextSquare(first, second);
+        first = clearSquare(first, x1);
+        second = clearSquare(second, x1);
+        if (empties == 1) {
+            return solve1(player, opponent, x1);
+        }
+        int x2 = nextSquare(first, second);
+        first = clearSquare(first, x2);
+        second = clearSquare(second, x2);
+        if (empties == 2) {
+            return solve2(player, opponent, alpha, beta, x1, x2, false);
+        }
+        int x3 = nextSquare(first, second);
+        first = clearSquare(first, x3);
+        second = clearSquare(second, x3);
+        if (empties == 3) {
+            return solve3(player, opponent, alpha, beta, x1, x2, x3, false);
+        }
+        int x4 = nextSquare(first, second);
+        return solve4(player, opponent, alpha, beta, x1, x2, x3, x4, false);
+    }
+
+    private static int nextSquare(long first, long second) {
+        return Long.numberOfTrailingZeros((first != 0) ? (first) : (second));
+    }
+
+    private static long clearSquare(long squares, int square) {
+        return squares & ~(1L << square);
+    }
+
+    private int solve4(long player, long opponent, int alpha, int beta, int x1, int x2, int x3, int x4,
+            boolean passed) {
+        nodes++;
+        int value = NEGATIVE_INFINITY;
+        long flips;
+        if ((flips = BitBoard.getFlips(player, opponent, x1)) != 0) {
+            value = -solve3(opponent ^ flips, player | flips | (1L << x1), -beta, -alpha, x2, x3, x4, false);
+            if (value >= beta) {
+                return value;
+            }
+        }
+        if ((flips = BitBoard.getFlips(player, opponent, x2)) != 0) {
+            int lowerBound = Math.max(alpha, value);
+            int score = -solve3(opponent ^ flips, player | flips | (1L << x2), -beta, -lowerBound, x1, x3, x4, false);
+            if (score >= beta) {
+                return score;
+            }
+            value = Math.max(value, score);
+        }
+        if ((flips = BitBoard.getFlips(player, opponent, x3)) != 0) {
+            int lowerBound = Math.max(alpha, value);
+            int score = -solve3(opponent ^ flips, player | flips | (1L << x3), -beta, -lowerBound, x1, x2, x4, false);
+            if (score >= beta) {
+                return score;
+            }
+            value = Math.max(value, score);
+        }
+        if ((flips = BitBoard.getFlips(player, opponent, x4)) != 0) {
+            int lowerBound = Math.max(alpha, value);
+            int score = -solve3(opponent ^ flips, player | flips | (1L << x4), -beta, -lowerBound, x1, x2, x3, false);
+            value = Math.max(value, score);
+        }
+        if (value == NEGATIVE_INFINITY) {
+            if (passed) {
+                return Long.bitCount(player) - Long.bitCount(opponent);
+            }
+            return -solve4(opponent, player, -beta, -alpha, x1, x2, x3, x4, true);
+        }
+        return value;
+    }
+
+    private int solve3(long player, long opponent, int alpha, int beta, int x1, int x2, int x3, boolean passed) {
+        nodes++;
+        int value = NEGATIVE_INFINITY;
+        long flips;
+        if ((flips = BitBoard.getFlips(player, opponent, x1)) != 0) {
+            value = -solve2(opponent ^ flips, player | flips | (1L << x1), -beta, -alpha, x2, x3, false);
+            if (value >= beta) {
+                return value;
+            }
+        }
+        if ((flips = BitBoard.getFlips(player, opponent, x2)) != 0) {
+            int lowerBound = Math.max(alpha, value);
+            int score = -solve2(opponent ^ flips, player | flips | (1L << x2), -beta, -lowerBound, x1, x3, false);
+            if (score >= beta) {
+                return score;
+            }
+            value = Math.max(value, score);
+        }
+        if ((flips = BitBoard.getFlips(player, opponent, x3)) != 0) {
+            int lowerBound = Math.max(alpha, value);
+            int score = -solve2(opponent ^ flips, player | flips | (1L << x3), -beta, -lowerBound, x1, x2, false);
+            value = Math.max(value, score);
+        }
+        if (value == NEGATIVE_INFINITY) {
+            if (passed) {
+                return Long.bitCount(player) - Long.bitCount(opponent);
+            }
+            return -solve3(opponent, player, -beta, -alpha, x1, x2, x3, true);
+        }
+        return value;
+    }
+
+    private int solve2(long player, long opponent, int alpha, int beta, int x1, int x2, boolean passed) {
+        nodes++;
+        int value = NEGATIVE_INFINITY;
+        long flips;
+        if ((flips = BitBoard.getFlips(player, opponent, x1)) != 0) {
+            value = -solve1(opponent ^ flips, player | flips | (1L << x1), x2);
+            if (value >= beta) {
+                return value;
+            }
+        }
+        if ((flips = BitBoard.getFlips(player, opponent, x2)) != 0) {
+            value = Math.max(value, -solve1(opponent ^ flips, player | flips | (1L << x2), x1));
+        }
+        if (value == NEGATIVE_INFINITY) {
+            if (passed) {
+                return Long.bitCount(player) - Long.bitCount(opponent);
+            }
+            return -solve2(opponent, player, -beta, -alpha, x1, x2, true);
+        }
+        return value;
+    }
+
+    /**
+     * Final score with a single empty square: whoever can play it does, and
+     * the square stays empty when neither side can.
+     */
+    private int solve1(long player, long opponent, int x) {
+        nodes++;
+        int score = 2 * Long.bitCount(player) - 63;
+        int flipped = Long.bitCount(BitBoard.getFlips(player, opponent, x));
+        if (flipped != 0) {
+            return score + 2 * flipped + 1;
+        }
+        flipped = Long.bitCount(BitBoard.getFlips(opponent, player, x));
+        if (flipped != 0) {
+            return score - 2 * flipped - 1;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Direct-mapped cache of static scores, keyed by the Zobrist hash of the
+ * position and kept apart from the {@link TranspositionTable} so leaf
+ * scores never push search results out. Each entry is a pair of longs, the
+ * data and the key XORed with the data, as in the transposition table:
+ * threads share the cache without locks, and an entry torn by two writers,
+ * or a long torn into halves, fails the key check instead of giving another
+ * position's score.
+ *
+ * @author filipe
+ */
+public class EvaluationCache {
+
+    public static final int MISS = Integer.MIN_VALUE;
+
+    private static final long VALID = 1L << 32;
+    private static final int LONGS_PER_ENTRY = 2;
+    private static final int MAX_ENTRIES = 1 << 26;
+
+    private final long[] entries;
+    private final int indexMask;
+    private final LongAdder probes;
+    private final LongAdder hits;
+
+    /**
+     * A size of zero gives a cache that never hits and stores nothing.
+     */
+    public EvaluationCache(int sizeInMB) {
+        long count = ((long) Math.max(0, sizeInMB) << 20) / (LONGS_PER_ENTRY * Long.BYTES);
+        int entryCount = (count > 0) ? (Integer.highestOneBit((int) Math.min(count, MAX_ENTRIES))) : (0);
+        entries = new long[entryCount * LONGS_PER_ENTRY];
+        indexMask = entryCount - 1;
+        probes = new LongAdder();
+        hits = new LongAdder();
+    }
+
+    public boolean isEnabled() {
+        return entries.length > 0;
+    }
+
+    /**
+     * Returns the score stored for {@code key}, or {@link #MISS}. Probes are
+     * not counted here: callers count their own and add them up with
+     * {@link #addCounts} now and then, so threads don't fight over counters.
+     */
+    public int probe(long key) {
+        int index = ((int) key & indexMask) * LONGS_PER_ENTRY;
+        long data = entries[index + 1];
+        if ((entries[index] ^ data) != key || data == 0) {
+            return MISS;
+        }
+        return (int) data;
+    }
+
+    public void addCounts(long probeCount, long hitCount) {
+        probes.add(probeCount);
+        hits.add(hitCount);
+    }
+
+    public void store(long key, int score) {
+        int index = ((int) key & indexMask) * LONGS_PER_ENTRY;
+        long data = VALID | (score & 0xFFFFFFFFL);
+        entries[index] = key ^ data;
+        entries[index + 1] = data;
+    }
+
+    public void clear() {
+        Arrays.fill(entries, 0);
+        resetCounters();
+    }
+
+    public void resetCounters() {
+        probes.reset();
+        hits.reset();
+    }
+
+    public long getProbeCount() {
+        return probes.sum();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Share of probes since the last reset that found their score.
+     */
+    public double getHitRate() {
+        long probeCount = probes.sum();
+        return (probeCount == 0) ? (0) : ((double) hits.sum() / probeCount);
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import game.core.SearchBoard;
+
+/**
+ * Static score of a position at the leaves of a search, in discs, from the
+ * point of view of the player to move. Implementations may keep scratch
+ * state, so every search thread gets its own instance.
+ *
+ * @author filipe
+ */
+public interface Evaluator {
+
+    int evaluate(long player, long opponent);
+
+    /**
+     * Scores the current position of a search, whose hash is at hand for
+     * implementations that cache.
+     */
+    default int evaluate(SearchBoard board) {
+        return evaluate(board.getPlayer(), board.getOpponent());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import game.core.BitBoard;
+import static game.core.ReversiGameAction.*;
+import game.core.SearchBoard;
+import static game.ai.TranspositionTable.NO_MOVE;
+
+/**
+ * Hash move first, then the two killer moves of the ply, then the remaining
+ * moves by history score plus static cues: corners are favoured, the
+ * squares diagonally next to corners are avoided, and moves that leave the
+ * opponent with fewer replies come earlier.
+ *
+ * @author filipe
+ */
+public class HeuristicMoveOrdering implements MoveOrdering {
+
+    private static final int MAX_PLY = 128;
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final long X_SQUARES = 0x0042000000004200L;
+    private static final int HASH_MOVE_SCORE = 1 << 30;
+    private static final int KILLER_SCORE = 1 << 29;
+    private static final int CORNER_SCORE = 1 << 16;
+    private static final int X_SQUARE_PENALTY = 1 << 15;
+    private static final int MOBILITY_WEIGHT = 1 << 11;
+    private static final int HISTORY_LIMIT = 1 << 14;
+
+    private final int[][] killers;
+    private final int[][] history;
+    private final int[] scores;
+
+    public HeuristicMoveOrdering() {
+        killers = new int[MAX_PLY][2];
+        history = new int[2][64];
+        scores = new int[64];
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = plyKillers[1] = NO_MOVE;
+        }
+    }
+
+    @Override
+    public int orderMoves(SearchBoard board, long moves, int hashMove, int ply, int[] orderedMoves) {
+        long player = board.getPlayer();
+        long opponent = board.getOpponent();
+        int[] colorHistory = history[getColorIndex(board)];
+        int count = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            long move = 1L << square;
+            int score;
+            if (square == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (square == killers[ply][0]) {
+                score = KILLER_SCORE + 1;
+            } else if (square == killers[ply][1]) {
+                score = KILLER_SCORE;
+            } else {
+                long flips = BitBoard.getFlips(player, opponent, square);
+                int replies = Long.bitCount(BitBoard.getMoves(opponent ^ flips, player | flips | move));
+                score = colorHistory[square] - replies * MOBILITY_WEIGHT;
+                if ((move & CORNERS) != 0) {
+                    score += CORNER_SCORE;
+                } else if ((move & X_SQUARES) != 0) {
+                    score -= X_SQUARE_PENALTY;
+                }
+            }
+            int i = count++;
+            while (i > 0 && scores[i - 1] < score) {
+                scores[i] = scores[i - 1];
+                orderedMoves[i] = orderedMoves[i - 1];
+                i--;
+            }
+            scores[i] = score;
+            orderedMoves[i] = square;
+        }
+        return count;
+    }
+
+    @Override
+    public void recordCutoff(SearchBoard board, int square, int ply, int depth) {
+        if (killers[ply][0] != square) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = square;
+        }
+        int[] colorHistory = history[getColorIndex(board)];
+        colorHistory[square] += depth * depth;
+        if (colorHistory[square] > HISTORY_LIMIT) {
+            for (int i = 0; i < 64; i++) {
+                colorHistory[i] >>= 1;
+            }
+        }
+    }
+
+    private int getColorIndex(SearchBoard board) {
+        return (board.getPlayerToMove() == BLACK) ? (0) : (1);
+    }
+}
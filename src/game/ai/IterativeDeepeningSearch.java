@@ -0,0 +1,273 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import game.config.AISettings;
+import game.core.BitBoard;
+import static game.ai.TranspositionTable.NO_MOVE;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import util.Coordinate2D;
+
+/**
+ * Runs the configured {@link SearchEngine} at depth 1, 2, 3... until the
+ * time budget of the settings runs out, and answers with the best move of
+ * the deepest iteration that finished. A budget of zero keeps the old
+ * fixed-depth behaviour.
+ *
+ * Once few enough squares are empty, the {@link EndgameSolver} gets the
+ * second half of the budget, and its move replaces the heuristic one
+ * whenever it finishes in time. Fixed-depth searches never run the solver,
+ * so the depth the user set is exactly the depth searched.
+ *
+ * When a thread pool is given and the settings ask for shared-hash search,
+ * this is a Lazy SMP search: every helper runs its own iterative deepening
+ * on the same root, half of them one ply ahead of the main thread, and they
+ * only cooperate through the shared transposition table. The move played is
+ * always the main thread's. With Young Brothers Wait the pool is handed to
+ * the engine instead, which splits its own tree over it.
+ *
+ * The same driver ponders: while the opponent thinks, it searches the
+ * position their expected reply leads to, from this side, with no deadline
+ * until stopped, so the move is often found by the time the turn comes.
+ *
+ * A search hands a {@link SearchProgress} to its progress listener after
+ * every iteration, on the searching thread; listeners should only keep the
+ * snapshot and return.
+ *
+ * @author filipe
+ */
+public class IterativeDeepeningSearch {
+
+    private final BitBoard gameState;
+    private final SearchEngine engine;
+    private final AISettings settings;
+    private final char perspective;
+    private final int emptySquares;
+    private final TranspositionTable table;
+    private final EvaluationCache evaluationCache;
+    private final ExecutorService helperPool;
+    private final int helperCount;
+    private final List<SearchEngine> helpers;
+    private int bestMove;
+    private int bestScore;
+    private boolean pondering;
+    private volatile boolean stopped;
+    private volatile EndgameSolver endgameSolver;
+    private Consumer<SearchProgress> progressListener;
+
+    public IterativeDeepeningSearch(BitBoard gameState, AISettings settings, char perspective, TranspositionTable table) {
+        this(gameState, settings, perspective, table, null, null);
+    }
+
+    public IterativeDeepeningSearch(BitBoard gameState, AISettings settings, char perspective, TranspositionTable table,
+            EvaluationCache evaluationCache, ExecutorService threadPool) {
+        this.gameState = gameState;
+        this.settings = settings;
+        this.perspective = perspective;
+        this.table = table;
+        this.evaluationCache = evaluationCache;
+        emptySquares = gameState.getEmptyCount();
+        engine = SearchEngines.create(gameState, settings, perspective, table, evaluationCache, threadPool);
+        if (threadPool != null && !SearchEngines.splitsSubtrees(settings)) {
+            helperPool = threadPool;
+            helperCount = settings.getThreadCount() - 1;
+        } else {
+            helperPool = null;
+            helperCount = 0;
+        }
+        helpers = new ArrayList<>();
+    }
+
+    public void setProgressListener(Consumer<SearchProgress> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Searches until the time budget runs out, or to exactly
+     * {@link AISettings#getMaxTreeLevel()} plies when there is no budget.
+     */
+    public Coordinate2D getBestMovement() {
+        table.newSearch();
+        if (evaluationCache != null) {
+            evaluationCache.resetCounters();
+        }
+        bestMove = NO_MOVE;
+        long start = System.nanoTime();
+        long deadline = SearchEngine.NO_DEADLINE;
+        long searchDeadline = SearchEngine.NO_DEADLINE;
+        int maxDepth = settings.getMaxTreeLevel();
+        boolean solving = settings.getTimeBudget() > 0 && emptySquares <= settings.getEndgameEmpties();
+        if (settings.getTimeBudget() > 0) {
+            deadline = start + settings.getTimeBudget() * 1000000L;
+            searchDeadline = (solving) ? (start + settings.getTimeBudget() * 500000L) : (deadline);
+            maxDepth = emptySquares;
+        }
+        searchToDeadline(maxDepth, searchDeadline, start);
+        if (solving) {
+            solveEndgame(deadline, start);
+        }
+        if (bestMove == NO_MOVE) {
+            return null;
+        }
+        return new Coordinate2D(BitBoard.row(bestMove), BitBoard.column(bestMove));
+    }
+
+    private void searchToDeadline(int maxDepth, long deadline, long start) {
+        List<Future<?>> running = startHelpers(maxDepth, deadline);
+        for (int depth = 1; depth <= maxDepth && !stopped; depth++) {
+            // The first iteration always completes so there is a move to play.
+            int score = engine.search(depth, (depth == 1) ? (SearchEngine.NO_DEADLINE) : (deadline));
+            if (engine.isAborted()) {
+                break;
+            }
+            bestMove = engine.getBestMove();
+            bestScore = score;
+            report(depth, score, start);
+            publishProgress(depth, getNodeCount(), start);
+            if (System.nanoTime() > deadline) {
+                break;
+            }
+        }
+        stopHelpers(running);
+    }
+
+    /**
+     * Searches with no time limit until {@link #stop()} is called, or only to
+     * {@link AISettings#getMaxTreeLevel()} plies on a fixed-depth level, and
+     * answers with the best move of the deepest iteration that finished, or
+     * {@link TranspositionTable#NO_MOVE}. Meant for the position the opponent
+     * is expected to leave: when they do, this search is the move search,
+     * stopped once the time budget of the turn is spent.
+     */
+    public int ponder() {
+        pondering = true;
+        table.newSearch();
+        bestMove = NO_MOVE;
+        int maxDepth = (settings.getTimeBudget() > 0) ? (emptySquares) : (settings.getMaxTreeLevel());
+        searchToDeadline(maxDepth, SearchEngine.NO_DEADLINE, System.nanoTime());
+        return bestMove;
+    }
+
+    /**
+     * Makes a running search return as soon as the engine notices; safe to
+     * call from any thread.
+     */
+    public void stop() {
+        stopped = true;
+        engine.stop();
+        EndgameSolver solver = endgameSolver;
+        if (solver != null) {
+            solver.stop();
+        }
+    }
+
+    private void solveEndgame(long deadline, long start) {
+        EndgameSolver solver = new EndgameSolver(gameState, perspective, table);
+        endgameSolver = solver;
+        if (stopped) {
+            return;
+        }
+        boolean winLossDraw = settings.getEndgameMode().equals(EndgameSolver.WIN_LOSS_DRAW);
+        int score = solver.solve(winLossDraw, deadline);
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+        if (solver.isAborted()) {
+            System.out.println("Endgame: no result in time (" + solver.getNodeCount() + " nodes)");
+            return;
+        }
+        bestMove = solver.getBestMove();
+        bestScore = score;
+        publishProgress(emptySquares, getNodeCount() + solver.getNodeCount(), start);
+        System.out.println("Endgame: " + ((winLossDraw) ? ("win/loss/draw") : ("exact")) + " score " + score
+                + " (" + solver.getNodeCount() + " nodes, " + elapsed + " ms, "
+                + solver.getNodeCount() / elapsed + " knodes/s)");
+    }
+
+    private List<Future<?>> startHelpers(int maxDepth, long deadline) {
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < helperCount; i++) {
+            SearchEngine helper = SearchEngines.create(gameState, settings, perspective, table, evaluationCache, null);
+            int firstDepth = 1 + (i % 2);
+            helpers.add(helper);
+            running.add(helperPool.submit(() -> {
+                for (int depth = firstDepth; depth <= maxDepth && !helper.isAborted(); depth++) {
+                    helper.search(depth, deadline);
+                }
+            }));
+        }
+        return running;
+    }
+
+    // Waits for every helper even when this thread is interrupted, as a
+    // cancelled move is: a helper left running would still be writing to the
+    // table when the next search starts. The interrupt is restored after.
+    private void stopHelpers(List<Future<?>> running) {
+        for (SearchEngine helper : helpers) {
+            helper.stop();
+        }
+        boolean interrupted = false;
+        for (Future<?> helperResult : running) {
+            while (true) {
+                try {
+                    helperResult.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    ex.getCause().printStackTrace();
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Score behind the chosen move, from the point of view of the player to
+     * move: the solver's final disc difference when it finished, otherwise
+     * the score of the deepest completed iteration.
+     */
+    public int getScore() {
+        return bestScore;
+    }
+
+    /**
+     * Nodes searched by the main thread and every helper.
+     */
+    public long getNodeCount() {
+        long nodes = engine.getNodeCount();
+        for (SearchEngine helper : helpers) {
+            nodes += helper.getNodeCount();
+        }
+        return nodes;
+    }
+
+    private void publishProgress(int depth, long nodeCount, long start) {
+        if (progressListener != null) {
+            progressListener.accept(new SearchProgress(depth, nodeCount, start));
+        }
+    }
+
+    private void report(int depth, int score, long start) {
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+        String line = ((pondering) ? ("Ponder depth ") : ("Depth ")) + depth + ": best move score " + score + " ("
+                + engine.getNodeCount() + " nodes, " + elapsed + " ms, "
+                + String.format("%.1f", 100 * engine.getFirstMoveCutoffRate()) + "% first-move cutoffs)";
+        if (evaluationCache != null && evaluationCache.getProbeCount() > 0) {
+            line += String.format(" [%.1f%% eval cache hits]", 100 * evaluationCache.getHitRate());
+        }
+        if (helperCount > 0) {
+            line += " [" + (helperCount + 1) + " threads, " + getNodeCount() / elapsed + " knodes/s]";
+        }
+        System.out.println(line);
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import game.core.SearchBoard;
+
+/**
+ *
+ * @author filipe
+ */
+public interface MoveOrdering {
+
+    /**
+     * Writes the squares of {@code moves} into {@code orderedMoves}, most
+     * promising first, and returns how many were written.
+     */
+    public int orderMoves(SearchBoard board, long moves, int hashMove, int ply, int[] orderedMoves);
+
+    public void recordCutoff(SearchBoard board, int square, int ply, int depth);
+}
@@ -0,0 +1,104 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import static util.Paths.*;
+
+/**
+ * Read-only table of precomputed opening moves, memory-mapped from
+ * {@code res/savegame/book.bin}. The file is a header (magic number and
+ * entry count) followed by fixed-size entries sorted by Zobrist key: the
+ * key, the best move square and its score from the point of view of the
+ * side to move. Lookups are a binary search straight on the mapped pages.
+ *
+ * A missing or unreadable file gives an empty book, so the engine simply
+ * searches every move as before.
+ *
+ * @author filipe
+ */
+public class OpeningBook {
+
+    public static final int MAGIC = 0x52564231;
+    public static final int HEADER_SIZE = 8;
+    public static final int ENTRY_SIZE = 12;
+    public static final long NOT_FOUND = -1;
+
+    private static OpeningBook singletonObject;
+
+    private final ByteBuffer entries;
+    private final int entryCount;
+
+    private OpeningBook(ByteBuffer entries, int entryCount) {
+        this.entries = entries;
+        this.entryCount = entryCount;
+    }
+
+    public static synchronized OpeningBook getInstance() {
+        if (singletonObject == null) {
+            singletonObject = load(new File(OPENING_BOOK_DIR));
+        }
+        return singletonObject;
+    }
+
+    public static OpeningBook load(File bookFile) {
+        if (!bookFile.isFile()) {
+            return new OpeningBook(null, 0);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(bookFile, "r");
+                FileChannel channel = file.getChannel()) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            boolean hasHeader = mapped.limit() >= HEADER_SIZE && mapped.getInt(0) == MAGIC;
+            int entryCount = (hasHeader) ? (mapped.getInt(4)) : (0);
+            if (!hasHeader || entryCount < 0 || HEADER_SIZE + (long) entryCount * ENTRY_SIZE > mapped.limit()) {
+                System.err.println("Ignoring malformed opening book " + bookFile);
+                return new OpeningBook(null, 0);
+            }
+            return new OpeningBook(mapped, entryCount);
+        } catch (IOException ex) {
+            System.err.println("Couldn't map the opening book: " + ex.getMessage());
+            return new OpeningBook(null, 0);
+        }
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the entry for {@code key} packed as the move in the low 8 bits
+     * and the score above them, or {@link #NOT_FOUND}.
+     */
+    public long probe(long key) {
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = HEADER_SIZE + middle * ENTRY_SIZE;
+            int comparison = Long.compare(entries.getLong(offset), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return (entries.getShort(offset + 8) & 0xFF) | ((long) entries.getShort(offset + 10) << 8);
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    public static int getMove(long entry) {
+        return (int) entry & 0xFF;
+    }
+
+    public static int getScore(long entry) {
+        return (int) (entry >> 8);
+    }
+}
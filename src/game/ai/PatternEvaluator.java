@@ -0,0 +1,261 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import static util.Paths.*;
+
+/**
+ * Evaluation as a sum of learned weights, one per pattern instance: the
+ * edges with their X-squares, the 3x3 and 2x5 corner blocks and the
+ * diagonals of length 4 to 8. Each instance reads its squares as a base-3
+ * number (empty 0, player 1, opponent 2) that indexes the weight table of
+ * its pattern for the current game phase.
+ *
+ * Every instance is taken from the same corner of one of the eight
+ * symmetric images of the board, so all instances of a pattern share one
+ * table. The images cost a few byte and bit reversals and a transpose,
+ * and each index is gathered with a handful of shifts and masks, or a
+ * multiplication for the diagonals.
+ *
+ * On top of the patterns, each phase has a weight for the difference
+ * between both sides in mobility, potential mobility, frontier discs and
+ * stable discs, taken from {@link BoardFeatures}.
+ *
+ * Weights are stored in 1/64 of a disc and read from
+ * {@code res/savegame/weights.bin}: a magic number, the phase count and
+ * the table size, then every phase's table as big-endian shorts.
+ *
+ * @author filipe
+ */
+public class PatternEvaluator implements Evaluator {
+
+    public static final int MAGIC = 0x52565731;
+    public static final int PHASES = 4;
+    public static final int FEATURE_COUNT = 34;
+    public static final int SCALAR_FEATURE_COUNT = 4;
+    public static final int WEIGHT_SCALE = 64;
+
+    public static final int EDGE = 0;
+    public static final int CORNER_3X3 = EDGE + 59049;
+    public static final int CORNER_2X5 = CORNER_3X3 + 19683;
+    public static final int DIAGONAL_8 = CORNER_2X5 + 59049;
+    public static final int DIAGONAL_7 = DIAGONAL_8 + 6561;
+    public static final int DIAGONAL_6 = DIAGONAL_7 + 2187;
+    public static final int DIAGONAL_5 = DIAGONAL_6 + 729;
+    public static final int DIAGONAL_4 = DIAGONAL_5 + 243;
+    public static final int SCALAR_FEATURES = DIAGONAL_4 + 81;
+    public static final int TABLE_SIZE = SCALAR_FEATURES + SCALAR_FEATURE_COUNT;
+
+    private static final long DIAGONAL_8_MASK = 0x8040201008040201L;
+    private static final long DIAGONAL_7_MASK = 0x0080402010080402L;
+    private static final long DIAGONAL_6_MASK = 0x0000804020100804L;
+    private static final long DIAGONAL_5_MASK = 0x0000008040201008L;
+    private static final long DIAGONAL_4_MASK = 0x0000000080402010L;
+    private static final long COLUMNS_TO_TOP = 0x0101010101010101L;
+
+    // Base-3 value of every 10-bit mask read as a number of 0 and 1 digits.
+    private static final int[] TERNARY = new int[1024];
+
+    static {
+        for (int bits = 0; bits < TERNARY.length; bits++) {
+            int value = 0;
+            for (int i = 9; i >= 0; i--) {
+                value = 3 * value + ((bits >>> i) & 1);
+            }
+            TERNARY[bits] = value;
+        }
+    }
+
+    private static short[][] sharedWeights;
+    private static boolean loaded;
+
+    private final short[][] weights;
+    private final int[] indexes;
+    private final int[] features;
+
+    public PatternEvaluator(short[][] weights) {
+        this.weights = weights;
+        indexes = new int[FEATURE_COUNT];
+        features = new int[SCALAR_FEATURE_COUNT];
+    }
+
+    /**
+     * Weights from the default file, loaded once. Null when the file is
+     * missing or malformed.
+     */
+    public static synchronized short[][] getDefaultWeights() {
+        if (!loaded) {
+            loaded = true;
+            try {
+                sharedWeights = loadWeights(new File(PATTERN_WEIGHTS_DIR));
+            } catch (IOException ex) {
+                System.err.println("Couldn't read the pattern weights: " + ex.getMessage());
+            }
+        }
+        return sharedWeights;
+    }
+
+    public static short[][] loadWeights(File weightsFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(weightsFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != PHASES || in.readInt() != TABLE_SIZE) {
+                throw new IOException("Unexpected layout in " + weightsFile);
+            }
+            short[][] weights = new short[PHASES][TABLE_SIZE];
+            for (short[] phaseWeights : weights) {
+                for (int i = 0; i < TABLE_SIZE; i++) {
+                    phaseWeights[i] = in.readShort();
+                }
+            }
+            return weights;
+        }
+    }
+
+    @Override
+    public int evaluate(long player, long opponent) {
+        short[] phaseWeights = weights[getPhase(player, opponent)];
+        getIndexes(player, opponent, indexes);
+        int sum = 0;
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+            sum += phaseWeights[indexes[i]];
+        }
+        getScalarFeatures(player, opponent, features);
+        for (int i = 0; i < SCALAR_FEATURE_COUNT; i++) {
+            sum += phaseWeights[SCALAR_FEATURES + i] * features[i];
+        }
+        return Math.round((float) sum / WEIGHT_SCALE);
+    }
+
+    public static int getPhase(long player, long opponent) {
+        int discs = Long.bitCount(player | opponent);
+        return Math.min(PHASES - 1, (discs - 4) * PHASES / 60);
+    }
+
+    /**
+     * Fills {@code features} with the player's lead in mobility, potential
+     * mobility, frontier discs and stable discs.
+     */
+    public static void getScalarFeatures(long player, long opponent, int[] features) {
+        features[0] = BoardFeatures.getMobility(player, opponent) - BoardFeatures.getMobility(opponent, player);
+        features[1] = BoardFeatures.getPotentialMobility(player, opponent)
+                - BoardFeatures.getPotentialMobility(opponent, player);
+        features[2] = BoardFeatures.getFrontier(player, opponent) - BoardFeatures.getFrontier(opponent, player);
+        features[3] = BoardFeatures.getStableCount(player, opponent) - BoardFeatures.getStableCount(opponent, player);
+    }
+
+    /**
+     * Fills {@code indexes} with the table position of every pattern
+     * instance of the position, {@link #FEATURE_COUNT} in all.
+     */
+    public static void getIndexes(long player, long opponent, int[] indexes) {
+        long player0 = player;
+        long player1 = mirrorColumns(player);
+        long player2 = Long.reverseBytes(player);
+        long player3 = Long.reverse(player);
+        long player4 = transpose(player);
+        long player5 = mirrorColumns(player4);
+        long player6 = Long.reverseBytes(player4);
+        long player7 = Long.reverse(player4);
+        long opponent0 = opponent;
+        long opponent1 = mirrorColumns(opponent);
+        long opponent2 = Long.reverseBytes(opponent);
+        long opponent3 = Long.reverse(opponent);
+        long opponent4 = transpose(opponent);
+        long opponent5 = mirrorColumns(opponent4);
+        long opponent6 = Long.reverseBytes(opponent4);
+        long opponent7 = Long.reverse(opponent4);
+        int i = 0;
+        indexes[i++] = EDGE + edge(player0, opponent0);
+        indexes[i++] = EDGE + edge(player2, opponent2);
+        indexes[i++] = EDGE + edge(player4, opponent4);
+        indexes[i++] = EDGE + edge(player6, opponent6);
+        indexes[i++] = CORNER_3X3 + corner3x3(player0, opponent0);
+        indexes[i++] = CORNER_3X3 + corner3x3(player1, opponent1);
+        indexes[i++] = CORNER_3X3 + corner3x3(player2, opponent2);
+        indexes[i++] = CORNER_3X3 + corner3x3(player3, opponent3);
+        indexes[i++] = CORNER_2X5 + corner2x5(player0, opponent0);
+        indexes[i++] = CORNER_2X5 + corner2x5(player1, opponent1);
+        indexes[i++] = CORNER_2X5 + corner2x5(player2, opponent2);
+        indexes[i++] = CORNER_2X5 + corner2x5(player3, opponent3);
+        indexes[i++] = CORNER_2X5 + corner2x5(player4, opponent4);
+        indexes[i++] = CORNER_2X5 + corner2x5(player5, opponent5);
+        indexes[i++] = CORNER_2X5 + corner2x5(player6, opponent6);
+        indexes[i++] = CORNER_2X5 + corner2x5(player7, opponent7);
+        indexes[i++] = DIAGONAL_8 + diagonal(player0, opponent0, DIAGONAL_8_MASK, 0);
+        indexes[i++] = DIAGONAL_8 + diagonal(player1, opponent1, DIAGONAL_8_MASK, 0);
+        indexes[i++] = DIAGONAL_7 + diagonal(player0, opponent0, DIAGONAL_7_MASK, 1);
+        indexes[i++] = DIAGONAL_7 + diagonal(player1, opponent1, DIAGONAL_7_MASK, 1);
+        indexes[i++] = DIAGONAL_7 + diagonal(player4, opponent4, DIAGONAL_7_MASK, 1);
+        indexes[i++] = DIAGONAL_7 + diagonal(player6, opponent6, DIAGONAL_7_MASK, 1);
+        indexes[i++] = DIAGONAL_6 + diagonal(player0, opponent0, DIAGONAL_6_MASK, 2);
+        indexes[i++] = DIAGONAL_6 + diagonal(player1, opponent1, DIAGONAL_6_MASK, 2);
+        indexes[i++] = DIAGONAL_6 + diagonal(player4, opponent4, DIAGONAL_6_MASK, 2);
+        indexes[i++] = DIAGONAL_6 + diagonal(player6, opponent6, DIAGONAL_6_MASK, 2);
+        indexes[i++] = DIAGONAL_5 + diagonal(player0, opponent0, DIAGONAL_5_MASK, 3);
+        indexes[i++] = DIAGONAL_5 + diagonal(player1, opponent1, DIAGONAL_5_MASK, 3);
+        indexes[i++] = DIAGONAL_5 + diagonal(player4, opponent4, DIAGONAL_5_MASK, 3);
+        indexes[i++] = DIAGONAL_5 + diagonal(player6, opponent6, DIAGONAL_5_MASK, 3);
+        indexes[i++] = DIAGONAL_4 + diagonal(player0, opponent0, DIAGONAL_4_MASK, 4);
+        indexes[i++] = DIAGONAL_4 + diagonal(player1, opponent1, DIAGONAL_4_MASK, 4);
+        indexes[i++] = DIAGONAL_4 + diagonal(player4, opponent4, DIAGONAL_4_MASK, 4);
+        indexes[i] = DIAGONAL_4 + diagonal(player6, opponent6, DIAGONAL_4_MASK, 4);
+    }
+
+    // First row plus the two X-squares b2 and g2.
+    private static int edge(long player, long opponent) {
+        return ternary(edgeBits(player), edgeBits(opponent));
+    }
+
+    private static int edgeBits(long bits) {
+        return (int) ((bits & 0xFF) | ((bits >>> 1) & 0x100) | ((bits >>> 5) & 0x200));
+    }
+
+    private static int corner3x3(long player, long opponent) {
+        return ternary(corner3x3Bits(player), corner3x3Bits(opponent));
+    }
+
+    private static int corner3x3Bits(long bits) {
+        return (int) ((bits & 0x7) | ((bits >>> 5) & 0x38) | ((bits >>> 10) & 0x1C0));
+    }
+
+    private static int corner2x5(long player, long opponent) {
+        return ternary(corner2x5Bits(player), corner2x5Bits(opponent));
+    }
+
+    private static int corner2x5Bits(long bits) {
+        return (int) ((bits & 0x1F) | ((bits >>> 3) & 0x3E0));
+    }
+
+    // Every square of the diagonal is on its own column, so multiplying
+    // stacks them all into the top row without carries.
+    private static int diagonal(long player, long opponent, long mask, int offset) {
+        int playerBits = (int) (((player & mask) * COLUMNS_TO_TOP) >>> (56 + offset));
+        int opponentBits = (int) (((opponent & mask) * COLUMNS_TO_TOP) >>> (56 + offset));
+        return ternary(playerBits, opponentBits);
+    }
+
+    private static int ternary(int playerBits, int opponentBits) {
+        return TERNARY[playerBits] + 2 * TERNARY[opponentBits];
+    }
+
+    private static long mirrorColumns(long bits) {
+        return Long.reverseBytes(Long.reverse(bits));
+    }
+
+    private static long transpose(long bits) {
+        long t = 0x0F0F0F0F00000000L & (bits ^ (bits << 28));
+        bits ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (bits ^ (bits << 14));
+        bits ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (bits ^ (bits << 7));
+        bits ^= t ^ (t >>> 7);
+        return bits;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import game.config.AISettings;
+import game.core.BitBoard;
+import game.core.SearchBoard;
+import static game.ai.TranspositionTable.*;
+
+/**
+ * Fail-soft negamax principal variation search. Every move after the first
+ * is tried with a null window and only searched again with the full window
+ * when it beats the best score so far. Iterations after the first start
+ * from an aspiration window centred on the previous iteration's score.
+ *
+ * Scores are always seen from the side to move, so the bias of a move is
+ * simply added to the negated score of the position it leads to. A pass
+ * costs a ply and adds no bias; the game only ends when both sides pass.
+ *
+ * @author filipe
+ */
+public class PrincipalVariationSearch implements SearchEngine {
+
+    private static final int POSITIVE_INFINITY = 1000000;
+    private static final int NEGATIVE_INFINITY = -1000000;
+    private static final int ASPIRATION_WINDOW = 4;
+    private static final int TIME_CHECK_MASK = 4095;
+    private static final int MAX_PLY = 128;
+    private static final int NO_CUT = Integer.MIN_VALUE;
+
+    private final SearchBoard board;
+    private final TranspositionTable table;
+    private final MoveOrdering ordering;
+    private final Evaluator evaluator;
+    private final ProbCut probCut;
+    private final int[][] moveLists;
+    private AISettings settings;
+    private long deadline;
+    private long nodes;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private boolean aborted;
+    private volatile boolean stopRequested;
+    private boolean probing;
+    private boolean hasPreviousScore;
+    private int previousScore;
+    private int bestMove;
+
+    public PrincipalVariationSearch(BitBoard gameState, AISettings settings, char perspective, TranspositionTable table,
+            EvaluationCache evaluationCache) {
+        this.settings = settings;
+        this.table = table;
+        board = new SearchBoard(gameState, perspective);
+        ordering = SearchEngines.createMoveOrdering(settings);
+        evaluator = SearchEngines.createEvaluator(settings, evaluationCache);
+        probCut = (settings.isProbCutEnabled()) ? (ProbCut.getDefault()) : (null);
+        moveLists = new int[MAX_PLY][64];
+    }
+
+    @Override
+    public int search(int depth, long deadline) {
+        this.deadline = deadline;
+        aborted = false;
+        bestMove = NO_MOVE;
+        if (!hasPreviousScore) {
+            return storeScore(getBestScore(0, depth, NEGATIVE_INFINITY, POSITIVE_INFINITY));
+        }
+        int window = ASPIRATION_WINDOW;
+        int alpha = previousScore - window;
+        int beta = previousScore + window;
+        while (true) {
+            int score = getBestScore(0, depth, alpha, beta);
+            if (aborted) {
+                return score;
+            }
+            if (score <= alpha) {
+                window *= 2;
+                alpha = Math.max(NEGATIVE_INFINITY, score - window);
+            } else if (score >= beta) {
+                window *= 2;
+                beta = Math.min(POSITIVE_INFINITY, score + window);
+            } else {
+                return storeScore(score);
+            }
+        }
+    }
+
+    private int storeScore(int score) {
+        if (!aborted) {
+            previousScore = score;
+            hasPreviousScore = true;
+        }
+        return score;
+    }
+
+    @Override
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    @Override
+    public void stop() {
+        stopRequested = true;
+    }
+
+    @Override
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    @Override
+    public double getFirstMoveCutoffRate() {
+        return (cutoffs == 0) ? (0) : ((double) firstMoveCutoffs / cutoffs);
+    }
+
+    @Override
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    private int getBestScore(int ply, int depth, int alpha, int beta) {
+        if ((++nodes & TIME_CHECK_MASK) == 0 && (stopRequested || System.nanoTime() > deadline)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (depth <= 0) {
+            return evaluator.evaluate(board);
+        }
+        long possibleMoves = board.getMoves();
+        if (possibleMoves == 0) {
+            if (BitBoard.getMoves(board.getOpponent(), board.getPlayer()) == 0) {
+                return board.getDiscDifference();
+            }
+            board.makePass();
+            int score = -getBestScore(ply + 1, depth - 1, -beta, -alpha);
+            board.undoMove();
+            return score;
+        }
+        long hash = board.getHash();
+        long entry = table.probe(hash);
+        int hashMove = NO_MOVE;
+        if (entry != 0) {
+            hashMove = getMove(entry);
+            if (ply > 0 && getDepth(entry) >= depth) {
+                int score = getScore(entry);
+                int bound = getBound(entry);
+                if (bound == BOUND_EXACT || (bound == BOUND_LOWER && score >= beta) || (bound == BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+        if (probCut != null && !probing && ply > 0 && probCut.covers(board.getEmptyCount(), depth)) {
+            int cut = tryProbCut(ply, depth, alpha, beta);
+            if (cut != NO_CUT) {
+                return cut;
+            }
+        }
+        int[] orderedMoves = moveLists[ply];
+        int moveCount = ordering.orderMoves(board, possibleMoves, hashMove, ply, orderedMoves);
+        int value = NEGATIVE_INFINITY;
+        int nodeBestMove = NO_MOVE;
+        for (int i = 0; i < moveCount; i++) {
+            int square = orderedMoves[i];
+            int bias = settings.getBiasFromSquare(square);
+            int lowerBound = Math.max(alpha, value);
+            int moveScore;
+            board.makeMove(square);
+            if (i == 0) {
+                moveScore = bias - getBestScore(ply + 1, depth - 1, bias - beta, bias - lowerBound);
+            } else {
+                moveScore = bias - getBestScore(ply + 1, depth - 1, bias - lowerBound - 1, bias - lowerBound);
+                if (moveScore > lowerBound && moveScore < beta) {
+                    moveScore = bias - getBestScore(ply + 1, depth - 1, bias - beta, bias - lowerBound);
+                }
+            }
+            board.undoMove();
+            if (moveScore > value) {
+                value = moveScore;
+                nodeBestMove = square;
+            }
+            if (value >= beta) {
+                cutoffs++;
+                if (i == 0) {
+                    firstMoveCutoffs++;
+                }
+                ordering.recordCutoff(board, square, ply, depth);
+                break;
+            }
+        }
+        if (aborted) {
+            return 0;
+        }
+        int bound = (value >= beta) ? (BOUND_LOWER) : ((value <= alpha) ? (BOUND_UPPER) : (BOUND_EXACT));
+        table.store(hash, depth, bound, value, nodeBestMove);
+        if (ply == 0) bestMove = nodeBestMove;
+        return value;
+    }
+
+    // A null-window shallow search on each side of the window; the shallow
+    // searches themselves never try to cut.
+    private int tryProbCut(int ply, int depth, int alpha, int beta) {
+        int empties = board.getEmptyCount();
+        int shallowDepth = ProbCut.getShallowDepth(depth);
+        int cut = NO_CUT;
+        probing = true;
+        if (beta < POSITIVE_INFINITY) {
+            int bound = probCut.getHighCut(empties, depth, beta);
+            if (getBestScore(ply, shallowDepth, bound - 1, bound) >= bound) {
+                cut = beta;
+            }
+        }
+        if (cut == NO_CUT && alpha > NEGATIVE_INFINITY) {
+            int bound = probCut.getLowCut(empties, depth, alpha);
+            if (getBestScore(ply, shallowDepth, bound, bound + 1) <= bound) {
+                cut = alpha;
+            }
+        }
+        probing = false;
+        return (aborted) ? (0) : (cut);
+    }
+}
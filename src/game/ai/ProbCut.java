@@ -0,0 +1,124 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import static util.Paths.*;
+
+/**
+ * Multi-ProbCut: predicts the score of a deep search from a shallow search
+ * of the same position, {@code deep = slope * shallow + intercept}, with a
+ * normal error of deviation {@code sigma}. A node whose shallow score
+ * lands far enough outside the window that the deep score is outside it
+ * too with high confidence is cut without the deep search.
+ *
+ * The regression is fitted separately for every remaining depth and for
+ * every ten empty squares, and read from {@code res/savegame/probcut.bin}:
+ * a header (magic number, bucket count, depth count) then the slope,
+ * intercept and deviation of every bucket and depth as floats. A deviation
+ * of zero means no cut at that depth.
+ *
+ * @author filipe
+ */
+public class ProbCut {
+
+    public static final int MAGIC = 0x52565043;
+    public static final int MIN_DEPTH = 3;
+    public static final int DEPTHS = 17;
+    public static final int EMPTIES_BUCKETS = 6;
+    public static final double CONFIDENCE = 1.5;
+
+    private static ProbCut sharedParameters;
+    private static boolean loaded;
+
+    private final float[][] slopes;
+    private final float[][] intercepts;
+    private final float[][] deviations;
+
+    public ProbCut(float[][] slopes, float[][] intercepts, float[][] deviations) {
+        this.slopes = slopes;
+        this.intercepts = intercepts;
+        this.deviations = deviations;
+    }
+
+    /**
+     * Parameters from the default file, loaded once. Null when the file is
+     * missing or malformed, which turns the pruning off.
+     */
+    public static synchronized ProbCut getDefault() {
+        if (!loaded) {
+            loaded = true;
+            try {
+                sharedParameters = load(new File(PROBCUT_DIR));
+            } catch (IOException ex) {
+                System.err.println("Couldn't read the ProbCut parameters: " + ex.getMessage());
+            }
+        }
+        return sharedParameters;
+    }
+
+    public static ProbCut load(File parametersFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(parametersFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != EMPTIES_BUCKETS || in.readInt() != DEPTHS) {
+                throw new IOException("Unexpected layout in " + parametersFile);
+            }
+            float[][] slopes = new float[EMPTIES_BUCKETS][DEPTHS];
+            float[][] intercepts = new float[EMPTIES_BUCKETS][DEPTHS];
+            float[][] deviations = new float[EMPTIES_BUCKETS][DEPTHS];
+            for (int bucket = 0; bucket < EMPTIES_BUCKETS; bucket++) {
+                for (int depth = 0; depth < DEPTHS; depth++) {
+                    slopes[bucket][depth] = in.readFloat();
+                    intercepts[bucket][depth] = in.readFloat();
+                    deviations[bucket][depth] = in.readFloat();
+                }
+            }
+            return new ProbCut(slopes, intercepts, deviations);
+        }
+    }
+
+    /**
+     * Depth of the shallow search standing in for a search of
+     * {@code depth}; keeps the parity of the depth from five on.
+     */
+    public static int getShallowDepth(int depth) {
+        return 2 * (depth / 4) + (depth & 1);
+    }
+
+    public static int getBucket(int empties) {
+        return Math.max(0, Math.min(EMPTIES_BUCKETS - 1, (empties - 1) / 10));
+    }
+
+    public boolean covers(int empties, int depth) {
+        return depth >= MIN_DEPTH && depth < DEPTHS && deviations[getBucket(empties)][depth] > 0
+                && slopes[getBucket(empties)][depth] > 0;
+    }
+
+    /**
+     * Shallow score from which a deep score of at least {@code beta} is
+     * predicted.
+     */
+    public int getHighCut(int empties, int depth, int beta) {
+        int bucket = getBucket(empties);
+        double bound = (beta + CONFIDENCE * deviations[bucket][depth] - intercepts[bucket][depth])
+                / slopes[bucket][depth];
+        return (int) Math.ceil(bound);
+    }
+
+    /**
+     * Shallow score up to which a deep score of at most {@code alpha} is
+     * predicted.
+     */
+    public int getLowCut(int empties, int depth, int alpha) {
+        int bucket = getBucket(empties);
+        double bound = (alpha - CONFIDENCE * deviations[bucket][depth] - intercepts[bucket][depth])
+                / slopes[bucket][depth];
+        return (int) Math.floor(bound);
+    }
+}
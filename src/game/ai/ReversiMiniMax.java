@@ -6,93 +6,228 @@
 package game.ai;
 
 import game.config.AISettings;
-import game.core.ReversiGame;
-import java.util.List;
-import util.Coordinate2D;
+import game.core.BitBoard;
+import game.core.SearchBoard;
+import static game.ai.TranspositionTable.*;
 
 /**
  *
  * @author filipe
  */
-public class ReversiMiniMax {
+public class ReversiMiniMax implements SearchEngine {
 
     private static final int POSITIVE_INFINITY = 1000000;
     private static final int NEGATIVE_INFINITY = -1000000;
+    private static final int TIME_CHECK_MASK = 4095;
+    private static final int MAX_PLY = 128;
+    private static final int NO_CUT = Integer.MIN_VALUE;
 
-    private class Node {
-
-        private ReversiGame gameState;
-        private int value;
-        private int alpha;
-        private int beta;
-        private boolean isMaximizer;
-        private Coordinate2D bestMove;
-
-        public Node(ReversiGame gameState, int alpha, int beta, boolean isMaximizer) {
-            this.gameState = gameState;
-            this.alpha = alpha;
-            this.beta = beta;
-            this.isMaximizer = isMaximizer;
-            this.value = (isMaximizer) ? (NEGATIVE_INFINITY) : (POSITIVE_INFINITY);
-            bestMove = null;
-        }
+    private final SearchBoard board;
+    private final TranspositionTable table;
+    private final MoveOrdering ordering;
+    private final Evaluator evaluator;
+    private final ProbCut probCut;
+    private final int[][] moveLists;
+    private AISettings settings;
+    private int maxDepth;
+    private long deadline;
+    private long nodes;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private boolean aborted;
+    private boolean probing;
+    private volatile boolean stopRequested;
+    private int bestMove;
 
+    public ReversiMiniMax(BitBoard gameState, AISettings settings, char perspective, TranspositionTable table,
+            EvaluationCache evaluationCache) {
+        this.settings = settings;
+        this.table = table;
+        board = new SearchBoard(gameState, perspective);
+        ordering = SearchEngines.createMoveOrdering(settings);
+        evaluator = SearchEngines.createEvaluator(settings, evaluationCache);
+        probCut = (settings.isProbCutEnabled()) ? (ProbCut.getDefault()) : (null);
+        moveLists = new int[MAX_PLY][64];
     }
 
-    private Node root;
-    private AISettings settings;
-    private char perspective;
+    @Override
+    public int search(int depth, long deadline) {
+        this.maxDepth = depth;
+        this.deadline = deadline;
+        aborted = false;
+        bestMove = NO_MOVE;
+        return getBestScore(0, NEGATIVE_INFINITY, POSITIVE_INFINITY, true);
+    }
 
-    public ReversiMiniMax(ReversiGame gameState, AISettings settings, char perspective) {
-        this.settings = settings;
-        root = new Node(gameState, NEGATIVE_INFINITY, POSITIVE_INFINITY, true);
-        this.perspective = perspective;
+    @Override
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    @Override
+    public void stop() {
+        stopRequested = true;
+    }
+
+    @Override
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    @Override
+    public double getFirstMoveCutoffRate() {
+        return (cutoffs == 0) ? (0) : ((double) firstMoveCutoffs / cutoffs);
     }
 
-    public Coordinate2D getBestMovement() {
-        System.out.println("Best move score: " + getBestScore(0, root));
-        return root.bestMove;
+    @Override
+    public int getBestMove() {
+        return bestMove;
     }
 
-    private int getBestScore(int currentLevel, Node currentNode) {
-//        for (int i = 0; i < currentLevel; i++) {
-//            System.err.print("\t");
-//        }
-//        System.err.println("Tree lvl: " + currentLevel + " ### ");
-        if (currentLevel < settings.getMaxTreeLevel()) {
-            List<Coordinate2D> possibleMoves = currentNode.gameState.getHints();
-            if (possibleMoves.isEmpty()) return currentNode.gameState.getRelativeScoring(perspective);
-            for (Coordinate2D possibleMove : possibleMoves) {
-                
-                if (currentNode.isMaximizer) {
-                    if (currentNode.value > currentNode.beta) {
-                        return currentNode.value;
-                    }
-                    ReversiGame childGameState = new ReversiGame(currentNode.gameState.getMatrixCopy(), currentNode.gameState.getCurrentPlayer());
-                    childGameState.put(possibleMove.x, possibleMove.y, currentNode.gameState.getCurrentPlayer());
-                    int moveScore = getBestScore(currentLevel + 1, new Node(childGameState, currentNode.value, currentNode.beta, false))
-                            + settings.getBiasFromPosition(possibleMove);
-                    if (moveScore > currentNode.value) { 
-                        currentNode.value = moveScore;
-                        currentNode.bestMove = possibleMove;
-                    }
-                } else {
-                    if (currentNode.value < currentNode.alpha) {
-                        return currentNode.value;
-                    }
-                    ReversiGame childGameState = new ReversiGame(currentNode.gameState.getMatrixCopy(), currentNode.gameState.getCurrentPlayer());
-                    childGameState.put(possibleMove.x, possibleMove.y, currentNode.gameState.getCurrentPlayer());
-                    int moveScore = getBestScore(currentLevel + 1, new Node(childGameState, currentNode.alpha, currentNode.value, true))
-                            - settings.getBiasFromPosition(possibleMove);
-                    if (moveScore < currentNode.value) { 
-                        currentNode.value = moveScore;
-                        currentNode.bestMove = possibleMove;
-                    }
+    // The whole tree is walked on a single board: each child is entered with
+    // makeMove and left with undoMove, so no position is ever copied.
+    // The bias of a move is added after its child returns, so the child is
+    // searched with the window shifted by that bias; this keeps the bounds
+    // stored in the transposition table valid.
+    // A side without moves passes: the same position is searched one ply
+    // deeper with the other side to move, and only when neither side can
+    // move is the position scored as the end of the game.
+    // Table entries hold scores of the side to move, as the other engines
+    // store them, so a search from either side can use what another left in
+    // a shared table; they are turned around at minimizing nodes.
+    private int getBestScore(int currentLevel, int alpha, int beta, boolean isMaximizer) {
+        if ((++nodes & TIME_CHECK_MASK) == 0 && (stopRequested || System.nanoTime() > deadline)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        int depth = maxDepth - currentLevel;
+        if (depth <= 0) {
+            return getRelativeScoring(evaluator.evaluate(board), isMaximizer);
+        }
+        long possibleMoves = board.getMoves();
+        if (possibleMoves == 0) {
+            if (BitBoard.getMoves(board.getOpponent(), board.getPlayer()) == 0) {
+                return getRelativeScoring(board.getDiscDifference(), isMaximizer);
+            }
+            board.makePass();
+            int score = getBestScore(currentLevel + 1, alpha, beta, !isMaximizer);
+            board.undoMove();
+            return score;
+        }
+        long hash = board.getHash();
+        long entry = table.probe(hash);
+        int hashMove = NO_MOVE;
+        if (entry != 0) {
+            hashMove = getMove(entry);
+            if (currentLevel > 0 && getDepth(entry) >= depth) {
+                int score = getRelativeScoring(getScore(entry), isMaximizer);
+                int bound = getRelativeBound(getBound(entry), isMaximizer);
+                if (bound == BOUND_EXACT || (bound == BOUND_LOWER && score >= beta) || (bound == BOUND_UPPER && score <= alpha)) {
+                    return score;
                 }
             }
-            return currentNode.value;
-        } else {
-            return currentNode.gameState.getRelativeScoring(perspective);
         }
+        if (probCut != null && !probing && currentLevel > 0 && probCut.covers(board.getEmptyCount(), depth)) {
+            int cut = tryProbCut(currentLevel, depth, alpha, beta, isMaximizer);
+            if (cut != NO_CUT) {
+                return cut;
+            }
+        }
+        int[] orderedMoves = moveLists[currentLevel];
+        int moveCount = ordering.orderMoves(board, possibleMoves, hashMove, currentLevel, orderedMoves);
+        int value = (isMaximizer) ? (NEGATIVE_INFINITY) : (POSITIVE_INFINITY);
+        int nodeBestMove = NO_MOVE;
+        for (int i = 0; i < moveCount; i++) {
+            int square = orderedMoves[i];
+            int bias = settings.getBiasFromSquare(square);
+            if (isMaximizer) {
+                board.makeMove(square);
+                int moveScore = getBestScore(currentLevel + 1, Math.max(alpha, value) - bias, beta - bias, false) + bias;
+                board.undoMove();
+                if (moveScore > value) {
+                    value = moveScore;
+                    nodeBestMove = square;
+                }
+                if (value >= beta) {
+                    recordCutoff(square, currentLevel, depth, i);
+                    break;
+                }
+            } else {
+                board.makeMove(square);
+                int moveScore = getBestScore(currentLevel + 1, alpha + bias, Math.min(beta, value) + bias, true) - bias;
+                board.undoMove();
+                if (moveScore < value) {
+                    value = moveScore;
+                    nodeBestMove = square;
+                }
+                if (value <= alpha) {
+                    recordCutoff(square, currentLevel, depth, i);
+                    break;
+                }
+            }
+        }
+        if (aborted) {
+            return 0;
+        }
+        int bound = (value >= beta) ? (BOUND_LOWER) : ((value <= alpha) ? (BOUND_UPPER) : (BOUND_EXACT));
+        table.store(hash, depth, getRelativeBound(bound, isMaximizer), getRelativeScoring(value, isMaximizer), nodeBestMove);
+        if (currentLevel == 0) bestMove = nodeBestMove;
+        return value;
+    }
+
+    // The regression works on scores of the side to move, so the window is
+    // turned around at minimizing nodes. Each shallow search is a null-window
+    // search of this same node, run by pulling maxDepth closer for a while.
+    private int tryProbCut(int currentLevel, int depth, int alpha, int beta, boolean isMaximizer) {
+        int empties = board.getEmptyCount();
+        int sideAlpha = (isMaximizer) ? (alpha) : (-beta);
+        int sideBeta = (isMaximizer) ? (beta) : (-alpha);
+        int savedMaxDepth = maxDepth;
+        int cut = NO_CUT;
+        probing = true;
+        maxDepth = currentLevel + ProbCut.getShallowDepth(depth);
+        if (sideBeta < POSITIVE_INFINITY) {
+            int bound = probCut.getHighCut(empties, depth, sideBeta);
+            if (searchSideWindow(currentLevel, bound - 1, bound, isMaximizer) >= bound) {
+                cut = getRelativeScoring(sideBeta, isMaximizer);
+            }
+        }
+        if (cut == NO_CUT && sideAlpha > NEGATIVE_INFINITY) {
+            int bound = probCut.getLowCut(empties, depth, sideAlpha);
+            if (searchSideWindow(currentLevel, bound, bound + 1, isMaximizer) <= bound) {
+                cut = getRelativeScoring(sideAlpha, isMaximizer);
+            }
+        }
+        maxDepth = savedMaxDepth;
+        probing = false;
+        return (aborted) ? (0) : (cut);
+    }
+
+    private int searchSideWindow(int currentLevel, int sideAlpha, int sideBeta, boolean isMaximizer) {
+        if (isMaximizer) {
+            return getBestScore(currentLevel, sideAlpha, sideBeta, true);
+        }
+        return -getBestScore(currentLevel, -sideBeta, -sideAlpha, false);
+    }
+
+    private void recordCutoff(int square, int currentLevel, int depth, int moveIndex) {
+        cutoffs++;
+        if (moveIndex == 0) {
+            firstMoveCutoffs++;
+        }
+        ordering.recordCutoff(board, square, currentLevel, depth);
+    }
+
+    private int getRelativeScoring(int score, boolean isMaximizer) {
+        return (isMaximizer) ? (score) : (-score);
+    }
+
+    private int getRelativeBound(int bound, boolean isMaximizer) {
+        if (isMaximizer || bound == BOUND_EXACT) {
+            return bound;
+        }
+        return (bound == BOUND_LOWER) ? (BOUND_UPPER) : (BOUND_LOWER);
     }
 }
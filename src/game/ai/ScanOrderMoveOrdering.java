@@ -0,0 +1,29 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import game.core.SearchBoard;
+
+/**
+ * Plain row-major order, as the moves come out of the move mask.
+ *
+ * @author filipe
+ */
+public class ScanOrderMoveOrdering implements MoveOrdering {
+
+    @Override
+    public int orderMoves(SearchBoard board, long moves, int hashMove, int ply, int[] orderedMoves) {
+        int count = 0;
+        for (; moves != 0; moves &= moves - 1) {
+            orderedMoves[count++] = Long.numberOfTrailingZeros(moves);
+        }
+        return count;
+    }
+
+    @Override
+    public void recordCutoff(SearchBoard board, int square, int ply, int depth) {
+    }
+}
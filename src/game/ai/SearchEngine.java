@@ -0,0 +1,42 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+/**
+ *
+ * @author filipe
+ */
+public interface SearchEngine {
+
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * Searches the root to {@code depth} plies and returns its score from the
+     * point of view of the player to move at the root. When {@code deadline}
+     * (a {@link System#nanoTime()} value) passes, the search unwinds early and
+     * {@link #isAborted()} reports that its result must be discarded.
+     */
+    public int search(int depth, long deadline);
+
+    public boolean isAborted();
+
+    /**
+     * Asks a running search, possibly on another thread, to unwind as soon
+     * as it next checks the clock. The request stays in effect for every
+     * later search of this engine.
+     */
+    public void stop();
+
+    public int getBestMove();
+
+    public long getNodeCount();
+
+    /**
+     * Share of fail-high nodes where the first move searched caused the
+     * cutoff, which is how well the move ordering is doing.
+     */
+    public double getFirstMoveCutoffRate();
+}
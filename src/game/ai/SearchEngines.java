@@ -0,0 +1,100 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import game.config.AISettings;
+import game.core.BitBoard;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builds the search pieces named in {@link AISettings}.
+ *
+ * @author filipe
+ */
+public class SearchEngines {
+
+    public static final String MINIMAX = "minimax";
+    public static final String PVS = "pvs";
+    public static final String SHARED_HASH = "lazysmp";
+    public static final String YOUNG_BROTHERS_WAIT = "ybwc";
+    public static final String DISC_EVALUATOR = "disc";
+    public static final String PATTERN_EVALUATOR = "pattern";
+
+    private SearchEngines() {
+    }
+
+    public static SearchEngine create(BitBoard gameState, AISettings settings, char perspective, TranspositionTable table) {
+        return create(gameState, settings, perspective, table, null, null);
+    }
+
+    /**
+     * Same as above, but leaf scores go through the evaluation cache when one
+     * is given, and when the settings ask for Young Brothers Wait and a
+     * fork/join pool is given, the engine splits its tree over that pool.
+     */
+    public static SearchEngine create(BitBoard gameState, AISettings settings, char perspective, TranspositionTable table,
+            EvaluationCache evaluationCache, ExecutorService pool) {
+        if (splitsSubtrees(settings) && pool instanceof ForkJoinPool) {
+            return new YoungBrothersWaitSearch(gameState, settings, perspective, table, evaluationCache,
+                    (ForkJoinPool) pool);
+        }
+        if (settings.getSearchAlgorithm().equals(PVS)) {
+            return new PrincipalVariationSearch(gameState, settings, perspective, table, evaluationCache);
+        }
+        return new ReversiMiniMax(gameState, settings, perspective, table, evaluationCache);
+    }
+
+    public static boolean splitsSubtrees(AISettings settings) {
+        return settings.getParallelSearch().equals(YOUNG_BROTHERS_WAIT);
+    }
+
+    /**
+     * Threads for a parallel search: a fork/join pool for Young Brothers Wait
+     * or a pool of helper threads for shared-hash search. Returns null when
+     * the settings ask for a single thread.
+     */
+    public static ExecutorService createThreadPool(AISettings settings) {
+        int threads = settings.getThreadCount();
+        if (threads <= 1) {
+            return null;
+        }
+        if (splitsSubtrees(settings)) {
+            return new ForkJoinPool(threads);
+        }
+        return Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread helper = new Thread(runnable, "AI search helper");
+            helper.setDaemon(true);
+            return helper;
+        });
+    }
+
+    /**
+     * Falls back to the disc difference when the pattern weights can't be
+     * read. Only the pattern evaluator goes through the cache: a disc count
+     * is cheaper than a probe.
+     */
+    public static Evaluator createEvaluator(AISettings settings, EvaluationCache evaluationCache) {
+        if (settings.getEvaluator().equals(PATTERN_EVALUATOR)) {
+            short[][] weights = PatternEvaluator.getDefaultWeights();
+            if (weights != null && evaluationCache != null && evaluationCache.isEnabled()) {
+                return new CachedEvaluator(new PatternEvaluator(weights), evaluationCache);
+            }
+            if (weights != null) {
+                return new PatternEvaluator(weights);
+            }
+        }
+        return new DiscEvaluator();
+    }
+
+    public static MoveOrdering createMoveOrdering(AISettings settings) {
+        if (settings.getMoveOrdering().equals("scan")) {
+            return new ScanOrderMoveOrdering();
+        }
+        return new HeuristicMoveOrdering();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+/**
+ * What a move search has done so far: the deepest iteration finished and
+ * the nodes it took. Snapshots are immutable, so a search can hand them to
+ * any thread.
+ *
+ * @author filipe
+ */
+public class SearchProgress {
+
+    private final int depth;
+    private final long nodeCount;
+    private final long startTime;
+
+    /**
+     * @param startTime the {@link System#nanoTime()} the search started at
+     */
+    public SearchProgress(int depth, long nodeCount, long startTime) {
+        this.depth = depth;
+        this.nodeCount = nodeCount;
+        this.startTime = startTime;
+    }
+
+    /**
+     * Deepest iteration finished, zero before the first one.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Time since the search started, up to now rather than up to the
+     * snapshot, so a display keeps counting during long iterations.
+     */
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table of search results, shared by every search thread
+ * without locks. Each bucket holds a depth-preferred slot followed by an
+ * always-replace slot, and each slot is two longs: the key XORed with the
+ * data, then the data itself. A reader only trusts a slot whose two words
+ * XOR back to the probed key, so a slot torn by concurrent writers is seen
+ * as a miss instead of a wrong entry.
+ *
+ * Data layout: score in bits 0-31, move in 32-39, depth in 40-47, bound in
+ * 48-49 and search generation in 50-57.
+ *
+ * @author filipe
+ */
+public class TranspositionTable {
+
+    public static final int BOUND_EXACT = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_UPPER = 3;
+    public static final int NO_MOVE = 0xFF;
+
+    private static final int LONGS_PER_BUCKET = 4;
+    private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * Long.BYTES;
+
+    private final long[] table;
+    private final int bucketMask;
+    private int generation;
+
+    public TranspositionTable(int sizeInMB) {
+        long buckets = Math.max(1L, ((long) sizeInMB << 20) / BYTES_PER_BUCKET);
+        int bucketCount = Integer.highestOneBit((int) Math.min(buckets, 1 << 26));
+        table = new long[bucketCount * LONGS_PER_BUCKET];
+        bucketMask = bucketCount - 1;
+        generation = 0;
+    }
+
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+    }
+
+    /**
+     * Returns the packed data stored for {@code key}, or zero on a miss.
+     */
+    public long probe(long key) {
+        int index = getBucketIndex(key);
+        long data = table[index + 1];
+        if ((table[index] ^ data) == key && data != 0) {
+            return data;
+        }
+        data = table[index + 3];
+        if ((table[index + 2] ^ data) == key && data != 0) {
+            return data;
+        }
+        return 0;
+    }
+
+    public void store(long key, int depth, int bound, int score, int move) {
+        int index = getBucketIndex(key);
+        long data = pack(depth, bound, score, move);
+        long preferredData = table[index + 1];
+        boolean sameKey = (table[index] ^ preferredData) == key;
+        if (sameKey || preferredData == 0 || depth >= getDepth(preferredData)
+                || getGeneration(preferredData) != generation) {
+            if (sameKey && move == NO_MOVE) {
+                data = pack(depth, bound, score, getMove(preferredData));
+            }
+            table[index] = key ^ data;
+            table[index + 1] = data;
+        } else {
+            table[index + 2] = key ^ data;
+            table[index + 3] = data;
+        }
+    }
+
+    private int getBucketIndex(long key) {
+        return (int) (key & bucketMask) * LONGS_PER_BUCKET;
+    }
+
+    private long pack(int depth, int bound, int score, int move) {
+        return (score & 0xFFFFFFFFL)
+                | ((long) (move & 0xFF) << 32)
+                | ((long) (depth & 0xFF) << 40)
+                | ((long) bound << 48)
+                | ((long) generation << 50);
+    }
+
+    public static int getScore(long data) {
+        return (int) data;
+    }
+
+    public static int getMove(long data) {
+        return (int) (data >>> 32) & 0xFF;
+    }
+
+    public static int getDepth(long data) {
+        return (int) (data >>> 40) & 0xFF;
+    }
+
+    public static int getBound(long data) {
+        return (int) (data >>> 48) & 0x3;
+    }
+
+    private static int getGeneration(long data) {
+        return (int) (data >>> 50) & 0xFF;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.ai;
+
+import game.config.AISettings;
+import game.core.BitBoard;
+import game.core.SearchBoard;
+import static game.ai.TranspositionTable.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parallel negamax PVS on a {@link ForkJoinPool} under Young Brothers Wait
+ * rules: at a PV node the eldest move is searched serially to set a bound,
+ * then the younger siblings are forked as tasks. Each task tests its move
+ * with a null window and re-searches it as a PV node, where it may split
+ * again, when the test fails high. A sibling that fails high cancels the
+ * siblings still running under the same split point.
+ *
+ * @author filipe
+ */
+public class YoungBrothersWaitSearch implements SearchEngine {
+
+    private static final int POSITIVE_INFINITY = 1000000;
+    private static final int NEGATIVE_INFINITY = -1000000;
+    private static final int MIN_SPLIT_DEPTH = 4;
+    private static final int POLL_MASK = 1023;
+    private static final int MAX_PLY = 128;
+
+    private static class SplitPoint {
+
+        private final SplitPoint parent;
+        private volatile boolean cutoff;
+
+        private SplitPoint(SplitPoint parent) {
+            this.parent = parent;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final BitBoard gameState;
+    private final char perspective;
+    private final AISettings settings;
+    private final TranspositionTable table;
+    private final EvaluationCache evaluationCache;
+    private final LongAdder nodes;
+    private final LongAdder cutoffs;
+    private final LongAdder firstMoveCutoffs;
+    private volatile boolean stopRequested;
+    private volatile boolean aborted;
+    private volatile long deadline;
+    private int bestMove;
+
+    public YoungBrothersWaitSearch(BitBoard gameState, AISettings settings, char perspective, TranspositionTable table,
+            EvaluationCache evaluationCache, ForkJoinPool pool) {
+        this.gameState = gameState;
+        this.settings = settings;
+        this.perspective = perspective;
+        this.table = table;
+        this.evaluationCache = evaluationCache;
+        this.pool = pool;
+        nodes = new LongAdder();
+        cutoffs = new LongAdder();
+        firstMoveCutoffs = new LongAdder();
+    }
+
+    @Override
+    public int search(int depth, long deadline) {
+        this.deadline = deadline;
+        aborted = false;
+        bestMove = NO_MOVE;
+        Searcher rootSearcher = new Searcher(null, gameState, perspective);
+        int score = pool.invoke(new RecursiveTask<Integer>() {
+            @Override
+            protected Integer compute() {
+                return rootSearcher.getBestScore(0, depth, NEGATIVE_INFINITY, POSITIVE_INFINITY);
+            }
+        });
+        rootSearcher.flushNodes();
+        bestMove = rootSearcher.rootBestMove;
+        return score;
+    }
+
+    @Override
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    @Override
+    public void stop() {
+        stopRequested = true;
+    }
+
+    @Override
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    @Override
+    public long getNodeCount() {
+        return nodes.sum();
+    }
+
+    @Override
+    public double getFirstMoveCutoffRate() {
+        long total = cutoffs.sum();
+        return (total == 0) ? (0) : ((double) firstMoveCutoffs.sum() / total);
+    }
+
+    /**
+     * One younger sibling of a split point, searched on its own board.
+     */
+    private class SiblingTask extends RecursiveTask<Integer> {
+
+        private final SplitPoint splitPoint;
+        private final BitBoard position;
+        private final char playerToMove;
+        private final int ply;
+        private final int depth;
+        private final int lowerBound;
+        private final int beta;
+        private final int square;
+        private final int bias;
+        private boolean cancelled;
+
+        private SiblingTask(SplitPoint splitPoint, SearchBoard board, int ply, int depth, int lowerBound, int beta,
+                int square, int bias) {
+            this.splitPoint = splitPoint;
+            this.position = board.toBitBoard();
+            this.playerToMove = board.getPlayerToMove();
+            this.ply = ply;
+            this.depth = depth;
+            this.lowerBound = lowerBound;
+            this.beta = beta;
+            this.square = square;
+            this.bias = bias;
+        }
+
+        @Override
+        protected Integer compute() {
+            Searcher searcher = new Searcher(splitPoint, position, playerToMove);
+            int moveScore = bias - searcher.getBestScore(ply, depth, bias - lowerBound - 1, bias - lowerBound);
+            if (moveScore > lowerBound && moveScore < beta) {
+                moveScore = bias - searcher.getBestScore(ply, depth, bias - beta, bias - lowerBound);
+            }
+            cancelled = searcher.cancelled;
+            if (!cancelled && moveScore >= beta) {
+                splitPoint.cutoff = true;
+            }
+            searcher.flushNodes();
+            return moveScore;
+        }
+    }
+
+    /**
+     * Serial search state owned by a single task.
+     */
+    private class Searcher {
+
+        private final SplitPoint splitPoint;
+        private final SearchBoard board;
+        private final MoveOrdering ordering;
+        private final Evaluator evaluator;
+        private final int[][] moveLists;
+        private long localNodes;
+        private long flushedNodes;
+        private boolean cancelled;
+        private int rootBestMove;
+
+        private Searcher(SplitPoint splitPoint, BitBoard position, char playerToMove) {
+            this.splitPoint = splitPoint;
+            board = new SearchBoard(position, playerToMove);
+            ordering = SearchEngines.createMoveOrdering(settings);
+            evaluator = SearchEngines.createEvaluator(settings, evaluationCache);
+            moveLists = new int[MAX_PLY][];
+            rootBestMove = NO_MOVE;
+        }
+
+        private void poll() {
+            flushNodes();
+            if (stopRequested || System.nanoTime() > deadline) {
+                aborted = true;
+            }
+            boolean cut = aborted;
+            for (SplitPoint point = splitPoint; point != null && !cut; point = point.parent) {
+                cut = point.cutoff;
+            }
+            cancelled |= cut;
+        }
+
+        private void flushNodes() {
+            nodes.add(localNodes - flushedNodes);
+            flushedNodes = localNodes;
+        }
+
+        private int getBestScore(int ply, int depth, int alpha, int beta) {
+            if ((++localNodes & POLL_MASK) == 0) {
+                poll();
+            }
+            if (cancelled) {
+                return 0;
+            }
+            if (depth <= 0) {
+                return evaluator.evaluate(board);
+            }
+            long possibleMoves = board.getMoves();
+            if (possibleMoves == 0) {
+                if (BitBoard.getMoves(board.getOpponent(), board.getPlayer()) == 0) {
+                    return board.getDiscDifference();
+                }
+                board.makePass();
+                int score = -getBestScore(ply + 1, depth - 1, -beta, -alpha);
+                board.undoMove();
+                return score;
+            }
+            long hash = board.getHash();
+            long entry = table.probe(hash);
+            int hashMove = NO_MOVE;
+            if (entry != 0) {
+                hashMove = getMove(entry);
+                if (ply > 0 && getDepth(entry) >= depth) {
+                    int score = getScore(entry);
+                    int bound = getBound(entry);
+                    if (bound == BOUND_EXACT || (bound == BOUND_LOWER && score >= beta) || (bound == BOUND_UPPER && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+            if (moveLists[ply] == null) {
+                moveLists[ply] = new int[64];
+            }
+            int[] orderedMoves = moveLists[ply];
+            int moveCount = ordering.orderMoves(board, possibleMoves, hashMove, ply, orderedMoves);
+            int value = NEGATIVE_INFINITY;
+            int nodeBestMove = NO_MOVE;
+            boolean isPVNode = beta - alpha > 1;
+            for (int i = 0; i < moveCount; i++) {
+                int lowerBound = Math.max(alpha, value);
+                if (i > 0 && isPVNode && depth >= MIN_SPLIT_DEPTH && moveCount - i > 1) {
+                    SplitPoint point = new SplitPoint(splitPoint);
+                    List<SiblingTask> siblings = new ArrayList<>();
+                    for (int j = i; j < moveCount; j++) {
+                        int square = orderedMoves[j];
+                        board.makeMove(square);
+                        siblings.add(new SiblingTask(point, board, ply + 1, depth - 1, lowerBound, beta,
+                                square, settings.getBiasFromSquare(square)));
+                        board.undoMove();
+                    }
+                    ForkJoinTask.invokeAll(siblings);
+                    for (SiblingTask sibling : siblings) {
+                        int moveScore = sibling.join();
+                        if (!sibling.cancelled && moveScore > value) {
+                            value = moveScore;
+                            nodeBestMove = sibling.square;
+                        }
+                    }
+                    poll();
+                    if (value >= beta) {
+                        cutoffs.increment();
+                        ordering.recordCutoff(board, nodeBestMove, ply, depth);
+                    }
+                    break;
+                }
+                int square = orderedMoves[i];
+                int bias = settings.getBiasFromSquare(square);
+                int moveScore;
+                board.makeMove(square);
+                if (i == 0) {
+                    moveScore = bias - getBestScore(ply + 1, depth - 1, bias - beta, bias - lowerBound);
+                } else {
+                    moveScore = bias - getBestScore(ply + 1, depth - 1, bias - lowerBound - 1, bias - lowerBound);
+                    if (moveScore > lowerBound && moveScore < beta) {
+                        moveScore = bias - getBestScore(ply + 1, depth - 1, bias - beta, bias - lowerBound);
+                    }
+                }
+                board.undoMove();
+                if (moveScore > value) {
+                    value = moveScore;
+                    nodeBestMove = square;
+                }
+                if (value >= beta) {
+                    cutoffs.increment();
+                    if (i == 0) {
+                        firstMoveCutoffs.increment();
+                    }
+                    ordering.recordCutoff(board, square, ply, depth);
+                    break;
+                }
+            }
+            if (cancelled) {
+                return 0;
+            }
+            int bound = (value >= beta) ? (BOUND_LOWER) : ((value <= alpha) ? (BOUND_UPPER) : (BOUND_EXACT));
+            table.store(hash, depth, bound, value, nodeBestMove);
+            if (ply == 0) rootBestMove = nodeBestMove;
+            return value;
+        }
+    }
+}
@@ -6,6 +6,7 @@
 package game.config;
 
 import static game.config.AISettingsLoader.*;
+import game.core.BitBoard;
 import util.Coordinate2D;
 
 /**
@@ -14,19 +15,66 @@ import util.Coordinate2D;
  */
 public final class AISettings {
 
+    private static final int DEFAULT_HASH_SIZE = 16;
+    private static final int DEFAULT_EVAL_CACHE_SIZE = 1;
+    private static final String DEFAULT_MOVE_ORDERING = "heuristic";
+    private static final String DEFAULT_SEARCH_ALGORITHM = "minimax";
+    private static final int DEFAULT_THREADS = 1;
+    private static final String DEFAULT_PARALLEL_SEARCH = "lazysmp";
+    private static final int DEFAULT_ENDGAME_EMPTIES = 20;
+    private static final String DEFAULT_ENDGAME_MODE = "exact";
+    private static final String DEFAULT_OPENING_BOOK = "true";
+    private static final String DEFAULT_EVALUATOR = "disc";
+    private static final String DEFAULT_PROBCUT = "false";
+    private static final String DEFAULT_PONDER = "false";
+    private static final int DEFAULT_MINIMUM_MOVE_TIME = 0;
+
     private boolean fromPreset;
     private int[] configurations;
-    private int[][] precalculatedBiasedPositions;
+    private int[] precalculatedBiasedPositions;
+    private int timeBudget;
+    private int hashSizeMB;
+    private int evalCacheSizeMB;
+    private String moveOrdering;
+    private String searchAlgorithm;
+    private int threads;
+    private String parallelSearch;
+    private int endgameEmpties;
+    private String endgameMode;
+    private boolean openingBook;
+    private String evaluator;
+    private boolean probCut;
+    private boolean ponder;
+    private int minimumMoveTime;
 
     public AISettings(int[] configurations) {
         loadCustomConfiguration(configurations);
         precalculatedBiasedPositions = null;
+        loadEngineSettings();
     }
 
     public AISettings() {
         configurations = null;
         fromPreset = true;
         precalculatedBiasedPositions = null;
+        loadEngineSettings();
+    }
+
+    private void loadEngineSettings() {
+        AISettingsLoader loader = AISettingsLoader.getInstance();
+        hashSizeMB = loader.getEngineSetting(HASH_SIZE, DEFAULT_HASH_SIZE);
+        evalCacheSizeMB = loader.getEngineSetting(EVAL_CACHE_SIZE, DEFAULT_EVAL_CACHE_SIZE);
+        moveOrdering = loader.getEngineSetting(MOVE_ORDERING, DEFAULT_MOVE_ORDERING);
+        searchAlgorithm = loader.getEngineSetting(SEARCH_ALGORITHM, DEFAULT_SEARCH_ALGORITHM);
+        threads = loader.getEngineSetting(THREADS, DEFAULT_THREADS);
+        parallelSearch = loader.getEngineSetting(PARALLEL_SEARCH, DEFAULT_PARALLEL_SEARCH);
+        endgameEmpties = loader.getEngineSetting(ENDGAME_EMPTIES, DEFAULT_ENDGAME_EMPTIES);
+        endgameMode = loader.getEngineSetting(ENDGAME_MODE, DEFAULT_ENDGAME_MODE);
+        openingBook = Boolean.parseBoolean(loader.getEngineSetting(OPENING_BOOK, DEFAULT_OPENING_BOOK));
+        evaluator = loader.getEngineSetting(EVALUATOR, DEFAULT_EVALUATOR);
+        probCut = Boolean.parseBoolean(loader.getEngineSetting(PROBCUT, DEFAULT_PROBCUT));
+        ponder = Boolean.parseBoolean(loader.getEngineSetting(PONDER, DEFAULT_PONDER));
+        minimumMoveTime = loader.getEngineSetting(MINIMUM_MOVE_TIME, DEFAULT_MINIMUM_MOVE_TIME);
     }
 
     public int getBiasScore(int regionType) {
@@ -34,7 +82,169 @@ public final class AISettings {
     }
     
     public int getBiasFromPosition(Coordinate2D position) {
-        return precalculatedBiasedPositions[position.x][position.y];
+        return precalculatedBiasedPositions[BitBoard.square(position.x, position.y)];
+    }
+
+    public int getBiasFromSquare(int square) {
+        return precalculatedBiasedPositions[square];
+    }
+
+    public int getHashSizeMB() {
+        return hashSizeMB;
+    }
+
+    /**
+     * Size of the cache of leaf scores, apart from the transposition table.
+     * Zero turns the cache off.
+     */
+    public int getEvalCacheSizeMB() {
+        return evalCacheSizeMB;
+    }
+
+    public void setEvalCacheSizeMB(int evalCacheSizeMB) {
+        this.evalCacheSizeMB = evalCacheSizeMB;
+    }
+
+    /**
+     * Name of the move ordering used by the search: "heuristic" or "scan".
+     */
+    public String getMoveOrdering() {
+        return moveOrdering;
+    }
+
+    public void setMoveOrdering(String moveOrdering) {
+        this.moveOrdering = moveOrdering;
+    }
+
+    /**
+     * Name of the search algorithm: "minimax" for the alpha-beta minimax or
+     * "pvs" for principal variation search with aspiration windows.
+     */
+    public String getSearchAlgorithm() {
+        return searchAlgorithm;
+    }
+
+    public void setSearchAlgorithm(String searchAlgorithm) {
+        this.searchAlgorithm = searchAlgorithm;
+    }
+
+    /**
+     * Number of search threads, main thread included. Zero or less means one
+     * per available processor.
+     */
+    public int getThreadCount() {
+        return (threads > 0) ? (threads) : (Runtime.getRuntime().availableProcessors());
+    }
+
+    public void setThreadCount(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * How several threads share a search: "lazysmp" for helper threads
+     * sharing the transposition table, or "ybwc" for Young Brothers Wait
+     * splitting on a fork/join pool.
+     */
+    public String getParallelSearch() {
+        return parallelSearch;
+    }
+
+    public void setParallelSearch(String parallelSearch) {
+        this.parallelSearch = parallelSearch;
+    }
+
+    /**
+     * Number of empty squares at which the endgame solver takes over from
+     * the heuristic search, on levels with a time budget only. Zero or less
+     * turns the solver off.
+     */
+    public int getEndgameEmpties() {
+        return endgameEmpties;
+    }
+
+    public void setEndgameEmpties(int endgameEmpties) {
+        this.endgameEmpties = endgameEmpties;
+    }
+
+    /**
+     * "exact" to solve for the final disc difference, or "wld" to only tell
+     * wins, draws and losses apart, which is much cheaper.
+     */
+    public String getEndgameMode() {
+        return endgameMode;
+    }
+
+    public void setEndgameMode(String endgameMode) {
+        this.endgameMode = endgameMode;
+    }
+
+    /**
+     * Leaf evaluation: "disc" for the disc difference or "pattern" for the
+     * learned pattern tables.
+     */
+    public String getEvaluator() {
+        return evaluator;
+    }
+
+    public void setEvaluator(String evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Whether levels with a time budget play from the opening book; levels
+     * searching to a fixed depth never do.
+     */
+    public boolean isOpeningBookEnabled() {
+        return openingBook;
+    }
+
+    public void setOpeningBookEnabled(boolean openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Whether the serial searches prune with Multi-ProbCut, trading a small
+     * risk of missing the best move for a deeper search in the same time.
+     */
+    public boolean isProbCutEnabled() {
+        return probCut;
+    }
+
+    public void setProbCutEnabled(boolean probCut) {
+        this.probCut = probCut;
+    }
+
+    /**
+     * Whether the computer keeps searching while the human thinks, to warm
+     * up the transposition table for its next move.
+     */
+    public boolean isPonderEnabled() {
+        return ponder;
+    }
+
+    public void setPonderEnabled(boolean ponder) {
+        this.ponder = ponder;
+    }
+
+    /**
+     * Least time in milliseconds between the computer getting the turn and
+     * its move showing up, so fast answers don't look instant. Zero plays
+     * as soon as the move is known.
+     */
+    public int getMinimumMoveTime() {
+        return minimumMoveTime;
+    }
+
+    public void setMinimumMoveTime(int minimumMoveTime) {
+        this.minimumMoveTime = minimumMoveTime;
+    }
+
+    /**
+     * Wall-clock budget per move in milliseconds. Zero means the search runs
+     * to exactly {@link #getMaxTreeLevel()} without a time limit.
+     */
+    public int getTimeBudget() {
+        return timeBudget;
     }
 
     public int getMaxTreeLevel() {
@@ -43,12 +253,14 @@ public final class AISettings {
 
     public void loadDefaultPreset(String preset) {
         configurations = AISettingsLoader.getInstance().getLevelSettings(preset);
+        timeBudget = AISettingsLoader.getInstance().getTimeBudget(preset);
         fromPreset = true;
         calculateBiasMatrix();
     }
 
     public void loadCustomConfiguration(int[] configurations) {
         this.configurations = configurations;
+        timeBudget = 0;
         fromPreset = false;
         calculateBiasMatrix();
     }
@@ -67,7 +279,7 @@ public final class AISettings {
 
     public void calculateBiasMatrix() {
         if (configurations != null) {
-            precalculatedBiasedPositions = new int[8][8];
+            precalculatedBiasedPositions = new int[64];
             for (int i = 0; i < 8; i++) {
                 for (int j = 0; j < 8; j++) {
                     boolean isRegion1 = (i == 0 && j == 0) || (i == 0 && j == 7) 
@@ -78,15 +290,15 @@ public final class AISettings {
                             || ((j == 1 || j == 6) && (i > 1 && i < 6));
                     boolean isRegion4 = i > 1 && i < 6 && j > 1 && j < 6;
                     if (isRegion1) {
-                        precalculatedBiasedPositions[i][j] = configurations[REGION_1];
+                        precalculatedBiasedPositions[BitBoard.square(i, j)] = configurations[REGION_1];
                     } else if (isRegion2) {
-                        precalculatedBiasedPositions[i][j] = configurations[REGION_2];
+                        precalculatedBiasedPositions[BitBoard.square(i, j)] = configurations[REGION_2];
                     } else if (isRegion3) {
-                        precalculatedBiasedPositions[i][j] = configurations[REGION_3];
+                        precalculatedBiasedPositions[BitBoard.square(i, j)] = configurations[REGION_3];
                     } else if (isRegion4) {
-                        precalculatedBiasedPositions[i][j] = configurations[REGION_4];
+                        precalculatedBiasedPositions[BitBoard.square(i, j)] = configurations[REGION_4];
                     } else {
-                        precalculatedBiasedPositions[i][j] = configurations[REGION_5];
+                        precalculatedBiasedPositions[BitBoard.square(i, j)] = configurations[REGION_5];
                     }
                 }
             }
@@ -101,7 +313,8 @@ public final class AISettings {
                     + "Region 2 bias:\t" + configurations[2] + "\n"
                     + "Region 3 bias:\t" + configurations[3] + "\n"
                     + "Region 4 bias:\t" + configurations[4] + "\n"
-                    + "Region 5 bias:\t" + configurations[5];
+                    + "Region 5 bias:\t" + configurations[5] + "\n"
+                    + "Time budget:\t" + timeBudget + " ms";
         }
         return "AI selection: Random";
     }
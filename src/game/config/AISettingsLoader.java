@@ -29,7 +29,23 @@ public class AISettingsLoader {
     public static final int REGION_4 = 4;
     public static final int REGION_5 = 5;
     
+    public static final String HASH_SIZE = "hashSize";
+    public static final String EVAL_CACHE_SIZE = "evalCacheSize";
+    public static final String MOVE_ORDERING = "moveOrdering";
+    public static final String SEARCH_ALGORITHM = "algorithm";
+    public static final String THREADS = "threads";
+    public static final String PARALLEL_SEARCH = "parallel";
+    public static final String ENDGAME_EMPTIES = "endgameEmpties";
+    public static final String ENDGAME_MODE = "endgameMode";
+    public static final String OPENING_BOOK = "openingBook";
+    public static final String EVALUATOR = "evaluator";
+    public static final String PROBCUT = "probCut";
+    public static final String PONDER = "ponder";
+    public static final String MINIMUM_MOVE_TIME = "minimumMoveTime";
+    
     private Map<String, Integer[]> aiSettings;
+    private Map<String, Integer> timeBudgets;
+    private Map<String, String> engineSettings;
     
     private static AISettingsLoader singletonObject;
     
@@ -46,21 +62,33 @@ public class AISettingsLoader {
     
     private void loadDefaultConfigFromFile() {
         aiSettings = new HashMap<>();
+        engineSettings = new HashMap<>();
+        timeBudgets = new HashMap<>();
         try {
             File defaults = new File(DEFAULT_CONFIG_DIR);
             FileReader fr = new FileReader(defaults);
             BufferedReader br = new BufferedReader(fr);
             String input;
+            String section = "";
             while ((input = br.readLine()) != null) {
-                if (input.contains("[Bias]")) {
-                    while (((input = br.readLine()) != null) && input.charAt(0) != '[') {
-                        Integer[] settings = new Integer[6];
-                        String[] stringSettings = input.split("=");
-                        for (int i = 0; i < 6; i++) {
-                            settings[i] = Integer.parseInt(stringSettings[1].split(" ")[i]);
-                        }
-                        aiSettings.put(stringSettings[0], settings);
+                if (input.isEmpty()) {
+                    continue;
+                }
+                if (input.charAt(0) == '[') {
+                    section = input.trim();
+                    continue;
+                }
+                String[] stringSettings = input.split("=");
+                if (section.equals("[Bias]")) {
+                    Integer[] settings = new Integer[6];
+                    for (int i = 0; i < 6; i++) {
+                        settings[i] = Integer.parseInt(stringSettings[1].split(" ")[i]);
                     }
+                    aiSettings.put(stringSettings[0], settings);
+                } else if (section.equals("[Time]")) {
+                    timeBudgets.put(stringSettings[0], Integer.parseInt(stringSettings[1].trim()));
+                } else if (section.equals("[Engine]")) {
+                    engineSettings.put(stringSettings[0].trim(), stringSettings[1].trim());
                 }
             }
         } catch (FileNotFoundException ex) {
@@ -78,4 +106,26 @@ public class AISettingsLoader {
         }
         return null;
     }
+    
+    public int getTimeBudget(String level) {
+        Integer budget = timeBudgets.get(level);
+        return (budget != null) ? (budget) : (0);
+    }
+    
+    public String getEngineSetting(String key, String defaultValue) {
+        String value = engineSettings.get(key);
+        return (value != null) ? (value) : (defaultValue);
+    }
+    
+    public int getEngineSetting(String key, int defaultValue) {
+        String value = engineSettings.get(key);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException ex) {
+                System.err.println("Invalid value for " + key + ": " + value);
+            }
+        }
+        return defaultValue;
+    }
 }
@@ -0,0 +1,266 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.core;
+
+import static game.core.ReversiGameAction.*;
+
+/**
+ * Immutable Reversi position stored as two 64-bit masks, one for the player
+ * to move and one for the opponent. Square {@code 8 * x + y} maps to bit
+ * {@code 1L << (8 * x + y)}, so bit order follows the row-major order of the
+ * old {@code char[8][8]} field.
+ *
+ * @author filipe
+ */
+public final class BitBoard {
+
+    public static final long FULL = 0xFFFFFFFFFFFFFFFFL;
+    public static final long NOT_A_FILE = 0xFEFEFEFEFEFEFEFEL;
+    public static final long NOT_H_FILE = 0x7F7F7F7F7F7F7F7FL;
+    private static final long INNER_FILES = NOT_A_FILE & NOT_H_FILE;
+
+    /**
+     * Squares seen from each square, in the four directions that move
+     * towards higher bits and the four that move towards lower bits.
+     */
+    private static final long[][] RAYS_UP = new long[4][64];
+    private static final long[][] RAYS_DOWN = new long[4][64];
+
+    static {
+        int[][] steps = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int d = 0; d < 4; d++) {
+            for (int square = 0; square < 64; square++) {
+                RAYS_UP[d][square] = getRay(square, steps[d][0], steps[d][1]);
+                RAYS_DOWN[d][square] = getRay(square, -steps[d][0], -steps[d][1]);
+            }
+        }
+    }
+
+    private static long getRay(int square, int dx, int dy) {
+        long ray = 0;
+        for (int x = row(square) + dx, y = column(square) + dy; x >= 0 && x < 8 && y >= 0 && y < 8; x += dx, y += dy) {
+            ray |= 1L << square(x, y);
+        }
+        return ray;
+    }
+
+    private final long player;
+    private final long opponent;
+
+    public BitBoard(long player, long opponent) {
+        this.player = player;
+        this.opponent = opponent;
+    }
+
+    public static BitBoard fromMatrix(char[][] field, char playerToMove) {
+        long black = 0;
+        long white = 0;
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                if (field[i][j] == BLACK) {
+                    black |= 1L << square(i, j);
+                } else if (field[i][j] == WHITE) {
+                    white |= 1L << square(i, j);
+                }
+            }
+        }
+        return (playerToMove == BLACK) ? (new BitBoard(black, white)) : (new BitBoard(white, black));
+    }
+
+    public static int square(int x, int y) {
+        return 8 * x + y;
+    }
+
+    public static int row(int square) {
+        return square >> 3;
+    }
+
+    public static int column(int square) {
+        return square & 7;
+    }
+
+    /**
+     * Legal moves of {@code player} as a mask, found by flooding every one of
+     * the eight directions at once through runs of opponent discs.
+     */
+    public static long getMoves(long player, long opponent) {
+        long empty = ~(player | opponent);
+        long inner = opponent & INNER_FILES;
+        long moves = 0;
+        long t;
+
+        t = inner & (player << 1);
+        t |= inner & (t << 1);
+        t |= inner & (t << 1);
+        t |= inner & (t << 1);
+        t |= inner & (t << 1);
+        t |= inner & (t << 1);
+        moves |= t << 1;
+
+        t = inner & (player >>> 1);
+        t |= inner & (t >>> 1);
+        t |= inner & (t >>> 1);
+        t |= inner & (t >>> 1);
+        t |= inner & (t >>> 1);
+        t |= inner & (t >>> 1);
+        moves |= t >>> 1;
+
+        t = opponent & (player << 8);
+        t |= opponent & (t << 8);
+        t |= opponent & (t << 8);
+        t |= opponent & (t << 8);
+        t |= opponent & (t << 8);
+        t |= opponent & (t << 8);
+        moves |= t << 8;
+
+        t = opponent & (player >>> 8);
+        t |= opponent & (t >>> 8);
+        t |= opponent & (t >>> 8);
+        t |= opponent & (t >>> 8);
+        t |= opponent & (t >>> 8);
+        t |= opponent & (t >>> 8);
+        moves |= t >>> 8;
+
+        t = inner & (player << 9);
+        t |= inner & (t << 9);
+        t |= inner & (t << 9);
+        t |= inner & (t << 9);
+        t |= inner & (t << 9);
+        t |= inner & (t << 9);
+        moves |= t << 9;
+
+        t = inner & (player >>> 9);
+        t |= inner & (t >>> 9);
+        t |= inner & (t >>> 9);
+        t |= inner & (t >>> 9);
+        t |= inner & (t >>> 9);
+        t |= inner & (t >>> 9);
+        moves |= t >>> 9;
+
+        t = inner & (player << 7);
+        t |= inner & (t << 7);
+        t |= inner & (t << 7);
+        t |= inner & (t << 7);
+        t |= inner & (t << 7);
+        t |= inner & (t << 7);
+        moves |= t << 7;
+
+        t = inner & (player >>> 7);
+        t |= inner & (t >>> 7);
+        t |= inner & (t >>> 7);
+        t |= inner & (t >>> 7);
+        t |= inner & (t >>> 7);
+        t |= inner & (t >>> 7);
+        moves |= t >>> 7;
+
+        return moves & empty;
+    }
+
+    /**
+     * Opponent discs flipped when {@code player} plays on {@code square}. The
+     * result is zero when the square does not flip anything.
+     *
+     * Along each ray the first square that is not an opponent disc is
+     * isolated with a single bit trick; when it holds a player disc, every
+     * square of the ray before it is flipped.
+     */
+    public static long getFlips(long player, long opponent, int square) {
+        long flips = 0;
+        for (int d = 0; d < 4; d++) {
+            long ray = RAYS_UP[d][square];
+            long blockers = ray & ~opponent;
+            long first = blockers & -blockers;
+            if ((first & player) != 0) {
+                flips |= ray & (first - 1);
+            }
+            ray = RAYS_DOWN[d][square];
+            first = Long.highestOneBit(ray & ~opponent);
+            if ((first & player) != 0) {
+                flips |= ray & -(first << 1);
+            }
+        }
+        return flips;
+    }
+
+    public long getPlayer() {
+        return player;
+    }
+
+    public long getOpponent() {
+        return opponent;
+    }
+
+    public long getMoves() {
+        return getMoves(player, opponent);
+    }
+
+    public long getFlips(int square) {
+        return getFlips(player, opponent, square);
+    }
+
+    public boolean isLegal(int square) {
+        return (getMoves() & (1L << square)) != 0;
+    }
+
+    /**
+     * Plays {@code square} for the player to move and returns the resulting
+     * position, seen from the other side.
+     */
+    public BitBoard play(int square) {
+        long flips = getFlips(square);
+        return new BitBoard(opponent ^ flips, player | flips | (1L << square));
+    }
+
+    public BitBoard pass() {
+        return new BitBoard(opponent, player);
+    }
+
+    public int getPlayerCount() {
+        return Long.bitCount(player);
+    }
+
+    public int getOpponentCount() {
+        return Long.bitCount(opponent);
+    }
+
+    public int getEmptyCount() {
+        return 64 - Long.bitCount(player | opponent);
+    }
+
+    public char getCell(int square, char playerToMove) {
+        long bit = 1L << square;
+        if ((player & bit) != 0) {
+            return playerToMove;
+        } else if ((opponent & bit) != 0) {
+            return (playerToMove == BLACK) ? (WHITE) : (BLACK);
+        }
+        return NOTHING;
+    }
+
+    public char[][] toMatrix(char playerToMove) {
+        char[][] field = new char[8][8];
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                field[i][j] = getCell(square(i, j), playerToMove);
+            }
+        }
+        return field;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof BitBoard) {
+            BitBoard otherBoard = (BitBoard) other;
+            return player == otherBoard.player && opponent == otherBoard.opponent;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(player * 31 + opponent);
+    }
+}
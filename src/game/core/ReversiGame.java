@@ -24,10 +24,12 @@ import static util.Paths.SAVED_GAME_DIR;
  */
 public class ReversiGame {
 
-    private char[][] field;
-    private ReversiGameListener[][] boardCells;
+    private BitBoard board;
+    private long zobristKey;
+    private ReversiGameCellDispatcher cellListeners;
     private List<ReversiGameListener> otherListeners;
     private List<Coordinate2D> lastTurnHints;
+    private long shownHints;
     private char currentTurnPlayer;
     private int usedCellsCount;
     private int scoreBlack;
@@ -49,16 +51,18 @@ public class ReversiGame {
     }
 
     public ReversiGame(String customOrganization, char firstPlayer) {
-        field = initializeField(customOrganization);
         currentTurnPlayer = (firstPlayer != BLACK) ? (WHITE) : (BLACK);
+        board = BitBoard.fromMatrix(initializeField(customOrganization), currentTurnPlayer);
+        zobristKey = Zobrist.hash(board, currentTurnPlayer);
         isForAIprediction = true;
         recalculateScore();
         lastTurnHints = new ArrayList<>();
     }
 
     public ReversiGame(char[][] customOrganization, char firstPlayer) {
-        field = customOrganization;
         currentTurnPlayer = (firstPlayer != BLACK) ? (WHITE) : (BLACK);
+        board = BitBoard.fromMatrix(customOrganization, currentTurnPlayer);
+        zobristKey = Zobrist.hash(board, currentTurnPlayer);
         isForAIprediction = true;
         recalculateScore();
         lastTurnHints = new ArrayList<>();
@@ -70,8 +74,9 @@ public class ReversiGame {
     }
 
     private void initializeElements(String savedConfigDir) {
-        boardCells = new ReversiGameListener[8][8];
+        cellListeners = new ReversiGameCellDispatcher();
         otherListeners = new ArrayList<>();
+        otherListeners.add(cellListeners);
         createFields(savedConfigDir);
     }
 
@@ -80,19 +85,23 @@ public class ReversiGame {
         loadFile(new File(savedConfigDir));
     }
 
+    /**
+     * Listens to a single cell, which gets the new content of the cell
+     * whenever it changes. Kept for listeners written before
+     * {@link ReversiGameDiff}; new code should take the whole diff.
+     */
     public void addReversiGameListener(ReversiGameListener listener, Coordinate2D position) {
-        boardCells[position.x][position.y] = listener;
+        cellListeners.setCellListener(position, listener);
     }
 
     public void addReversiGameListener(ReversiGameListener listener) {
         otherListeners.add(listener);
     }
 
-    private void fireReversiGameMovements(List<ReversiGameMovement> movements) {
-        if (boardCells != null) {
-            for (ReversiGameMovement movement : movements) {
-                boardCells[movement.getPosition().x][movement.getPosition().y]
-                        .reversiGameBoardChanged(movement.getEvent());
+    private void fireReversiGameDiff(ReversiGameDiff diff) {
+        if (otherListeners != null) {
+            for (ReversiGameListener listener : otherListeners) {
+                listener.reversiGameBoardUpdated(diff);
             }
         }
     }
@@ -122,10 +131,11 @@ public class ReversiGame {
             String line;
             while ((line = br.readLine()) != null) {
                 if (line.contains("[Board]")) {
-                    line = br.readLine();
-                    field = initializeField(line);
+                    char[][] field = initializeField(br.readLine());
                     line = br.readLine();
                     currentTurnPlayer = line.charAt(0);
+                    board = BitBoard.fromMatrix(field, currentTurnPlayer);
+                    zobristKey = Zobrist.hash(board, currentTurnPlayer);
                 }
             }
         } catch (FileNotFoundException ex) {
@@ -135,124 +145,86 @@ public class ReversiGame {
         }
     }
 
-    private void generateOutputFeedback(boolean willChangeTurn, List<ReversiGameMovement> movements) {
+    private void generateOutputFeedback(boolean willChangeTurn, long blackBefore, long whiteBefore, boolean fullUpdate) {
         ReversiGameEvent evt = scanForHints(willChangeTurn);
         if (lastTurnHints.isEmpty() && evt.getHints().isEmpty()) {
             noMovesAvailable = true;
         } else {
             noMovesAvailable = false;
         }
-        if (!isForAIprediction) {
-            if (previousPlayerHadHints()) {
-                setHintFields(movements, lastTurnHints, false);
-            }
-            if (showHintsForCurrentPlayer()) {
-                setHintFields(movements, evt.getHints(), true);
-            }
-        }
         lastTurnHints = evt.getHints();
-        fireReversiGameMovements(movements);
         if (!isForAIprediction) {
+            long hintsBefore = shownHints;
+            shownHints = (showHintsForCurrentPlayer()) ? (board.getMoves()) : (0);
+            fireReversiGameDiff(new ReversiGameDiff(this, blackBefore, whiteBefore, hintsBefore, getBlackDiscs(),
+                    getWhiteDiscs(), shownHints, fullUpdate));
             fireReversiBoardStatus(evt);
         }
     }
 
     public void syncGameChanges() {
-        List<ReversiGameMovement> movements = new ArrayList<>();
-        usedCellsCount = 0;
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                movements.add(new ReversiGameMovement(new Coordinate2D(i, j), field[i][j]));
-                if (field[i][j] != NOTHING) {
-                    usedCellsCount++;
-                }
-            }
-        }
-        generateOutputFeedback(false, movements);
+        usedCellsCount = 64 - board.getEmptyCount();
+        generateOutputFeedback(false, getBlackDiscs(), getWhiteDiscs(), true);
     }
 
     public void skip(char player) {
         if (!isFinished() && player == currentTurnPlayer) {
-            List<ReversiGameMovement> movements = new ArrayList<>();
-            generateOutputFeedback(true, movements);
+            long blackBefore = getBlackDiscs();
+            long whiteBefore = getWhiteDiscs();
+            board = board.pass();
+            generateOutputFeedback(true, blackBefore, whiteBefore, false);
         } else if (isFinished()) {
             ReversiGameEvent evt = new ReversiGameEvent(this, new ArrayList<>(), scoreBlack, scoreWhite, currentTurnPlayer, true);
             fireReversiBoardStatus(evt);
         }
     }
 
-    private void setHintFields(List<ReversiGameMovement> movements, List<Coordinate2D> hints, boolean add) {
-        if (add) {
-            for (Coordinate2D hint : hints) {
-                movements.add(new ReversiGameMovement(hint, HINT));
-            }
-        } else {
-            for (Coordinate2D hint : hints) {
-                char cellValue = field[hint.x][hint.y];
-                movements.add(new ReversiGameMovement(hint, (cellValue == HINT) ? (NOTHING) : (cellValue)));
-            }
-        }
-    }
-
     private void switchPlayers() {
         if (currentTurnPlayer == BLACK) {
             currentTurnPlayer = WHITE;
         } else {
             currentTurnPlayer = BLACK;
         }
+        zobristKey ^= Zobrist.WHITE_TO_MOVE;
     }
 
     private ReversiGameEvent scanForHints(boolean willChangeTurn) {
-        scoreBlack = 0;
-        scoreWhite = 0;
-        List<Coordinate2D> hints = new ArrayList<>();
         if (willChangeTurn) {
             switchPlayers();
         }
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (field[i][j] == BLACK) {
-                    scoreBlack++;
-                } else if (field[i][j] == WHITE) {
-                    scoreWhite++;
-                }
-                if (isCellUsable(i, j)) {
-                    hints.add(new Coordinate2D(i, j));
-                }
-            }
-        }
+        recalculateScore();
+        List<Coordinate2D> hints = getHints();
         return new ReversiGameEvent(this, hints, scoreBlack, scoreWhite, currentTurnPlayer, isFinished());
     }
 
     public List<Coordinate2D> getHints() {
         List<Coordinate2D> hints = new ArrayList<>();
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (isCellUsable(i, j)) {
-                    hints.add(new Coordinate2D(i, j));
-                }
-            }
+        for (long moves = board.getMoves(); moves != 0; moves &= moves - 1) {
+            int square = Long.numberOfTrailingZeros(moves);
+            hints.add(new Coordinate2D(BitBoard.row(square), BitBoard.column(square)));
         }
         return hints;
     }
 
     private void recalculateScore() {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (field[i][j] == BLACK) scoreBlack++;
-                else if (field[i][j] == WHITE) scoreWhite++;
-            }
+        if (currentTurnPlayer == BLACK) {
+            scoreBlack = board.getPlayerCount();
+            scoreWhite = board.getOpponentCount();
+        } else {
+            scoreBlack = board.getOpponentCount();
+            scoreWhite = board.getPlayerCount();
         }
     }
     
     public void put(int x, int y, char player) {
         if (!isFinished() && player == currentTurnPlayer && isCellUsable(x, y)) {
             usedCellsCount++;
-            List<ReversiGameMovement> movements = scanCellNeighborhood(x, y, true);
-            for (ReversiGameMovement movement : movements) {
-                field[movement.getPosition().x][movement.getPosition().y] = movement.getEvent();
-            }
-            generateOutputFeedback(true, movements);
+            int square = BitBoard.square(x, y);
+            long blackBefore = getBlackDiscs();
+            long whiteBefore = getWhiteDiscs();
+            zobristKey ^= Zobrist.getDiscKey(square, currentTurnPlayer) ^ Zobrist.getFlipKey(board.getFlips(square));
+            board = board.play(square);
+            generateOutputFeedback(true, blackBefore, whiteBefore, false);
         } else if (isFinished()) {
             ReversiGameEvent evt = new ReversiGameEvent(this, new ArrayList<>(), scoreBlack, scoreWhite, currentTurnPlayer, true);
             fireReversiBoardStatus(evt);
@@ -260,273 +232,13 @@ public class ReversiGame {
     }
 
     private boolean isCellUsable(int x, int y) {
-        return (field[x][y] == '_') && scanCellNeighborhood(x, y, false) != null;
-    }
-
-    private List<ReversiGameMovement> scanCellNeighborhood(int x, int y, boolean makeMove) {
-        if (!makeMove) {
-            if (scanLine(x, y, makeMove) != null || scanColumn(x, y, makeMove) != null
-                    || scanMainDiagonal(x, y, makeMove) != null || scanSecondaryDiagonal(x, y, makeMove) != null) {
-                return new ArrayList<>();
-            }
-            return null;
-        } else {
-            List<ReversiGameMovement> movementsLine = scanLine(x, y, makeMove);
-            List<ReversiGameMovement> movementsColunmn = scanColumn(x, y, makeMove);
-            List<ReversiGameMovement> movementsDiagonal1 = scanMainDiagonal(x, y, makeMove);
-            List<ReversiGameMovement> movementsDiagonal2 = scanSecondaryDiagonal(x, y, makeMove);
-            List<ReversiGameMovement> movements = new ArrayList<>();
-            if (movementsLine != null) {
-                movements.addAll(movementsLine);
-            }
-            if (movementsColunmn != null) {
-                movements.addAll(movementsColunmn);
-            }
-            if (movementsDiagonal1 != null) {
-                movements.addAll(movementsDiagonal1);
-            }
-            if (movementsDiagonal2 != null) {
-                movements.addAll(movementsDiagonal2);
-            }
-            if (!movements.isEmpty()) {
-                movements.add(new ReversiGameMovement(new Coordinate2D(x, y), currentTurnPlayer));
-            }
-            return movements;
-        }
-    }
-
-    private List<ReversiGameMovement> scanLine(int x, int y, boolean makeMove) {
-        boolean foundOpposite = false;
-        boolean foundDeadEnd = false;
-        boolean foundChain = false;
-        List<ReversiGameMovement> movements = new ArrayList<>();
-        List<ReversiGameMovement> auxEvts = new ArrayList<>();
-        int auxY = y;
-        if (y > 0) {
-            do {
-                if (isPlayerChar(x, --auxY) && field[x][auxY] != currentTurnPlayer) {
-                    foundOpposite = true;
-                    auxEvts.add(new ReversiGameMovement(new Coordinate2D(x, auxY), currentTurnPlayer));
-                } else if (field[x][auxY] == currentTurnPlayer && foundOpposite) {
-                    if (!makeMove) {
-                        return movements;
-                    } else {
-                        foundChain = true;
-                    }
-                } else {
-                    foundDeadEnd = true;
-                }
-            } while (auxY > 0 && !foundDeadEnd && !foundChain);
-        }
-        foundOpposite = foundDeadEnd = false;
-        if (foundChain) {
-            movements.addAll(auxEvts);
-        }
-        auxEvts.clear();
-        foundChain = false;
-        auxY = y;
-        if (y < 7) {
-            do {
-                if (isPlayerChar(x, ++auxY) && field[x][auxY] != currentTurnPlayer) {
-                    foundOpposite = true;
-                    auxEvts.add(new ReversiGameMovement(new Coordinate2D(x, auxY), currentTurnPlayer));
-                } else if (field[x][auxY] == currentTurnPlayer && foundOpposite) {
-                    if (!makeMove) {
-                        return movements;
-                    } else {
-                        foundChain = true;
-                    }
-                } else {
-                    foundDeadEnd = true;
-                }
-            } while (auxY < 7 && !foundDeadEnd && !foundChain);
-        }
-        if (foundChain) {
-            movements.addAll(auxEvts);
-        }
-        if (movements.isEmpty()) {
-            return null;
-        }
-        return movements;
-    }
-
-    private List<ReversiGameMovement> scanColumn(int x, int y, boolean makeMove) {
-        boolean foundOpposite = false;
-        boolean foundDeadEnd = false;
-        boolean foundChain = false;
-        List<ReversiGameMovement> movements = new ArrayList<>();
-        List<ReversiGameMovement> auxEvts = new ArrayList<>();
-        int auxX = x;
-        if (x > 0) {
-            do {
-                if (isPlayerChar(--auxX, y) && field[auxX][y] != currentTurnPlayer) {
-                    foundOpposite = true;
-                    auxEvts.add(new ReversiGameMovement(new Coordinate2D(auxX, y), currentTurnPlayer));
-                } else if (field[auxX][y] == currentTurnPlayer && foundOpposite) {
-                    if (!makeMove) {
-                        return movements;
-                    } else {
-                        foundChain = true;
-                    }
-                } else {
-                    foundDeadEnd = true;
-                }
-            } while (auxX > 0 && !foundDeadEnd && !foundChain);
-        }
-        foundOpposite = foundDeadEnd = false;
-        if (foundChain) {
-            movements.addAll(auxEvts);
-        }
-        auxEvts.clear();
-        foundChain = false;
-        auxX = x;
-        if (x < 7) {
-            do {
-                if (isPlayerChar(++auxX, y) && field[auxX][y] != currentTurnPlayer) {
-                    foundOpposite = true;
-                    auxEvts.add(new ReversiGameMovement(new Coordinate2D(auxX, y), currentTurnPlayer));
-                } else if (field[auxX][y] == currentTurnPlayer && foundOpposite) {
-                    if (!makeMove) {
-                        return movements;
-                    } else {
-                        foundChain = true;
-                    }
-                } else {
-                    foundDeadEnd = true;
-                }
-            } while (auxX < 7 && !foundDeadEnd && !foundChain);
-        }
-        if (foundChain) {
-            movements.addAll(auxEvts);
-        }
-        if (movements.isEmpty()) {
-            return null;
-        }
-        return movements;
-    }
-
-    private List<ReversiGameMovement> scanMainDiagonal(int x, int y, boolean makeMove) {
-        boolean foundOpposite = false;
-        boolean foundDeadEnd = false;
-        boolean foundChain = false;
-        List<ReversiGameMovement> movements = new ArrayList<>();
-        List<ReversiGameMovement> auxEvts = new ArrayList<>();
-        int auxX = x;
-        int auxY = y;
-        if (x > 0 && y > 0) {
-            do {
-                if (isPlayerChar(--auxX, --auxY) && field[auxX][auxY] != currentTurnPlayer) {
-                    foundOpposite = true;
-                    auxEvts.add(new ReversiGameMovement(new Coordinate2D(auxX, auxY), currentTurnPlayer));
-                } else if (field[auxX][auxY] == currentTurnPlayer && foundOpposite) {
-                    if (!makeMove) {
-                        return movements;
-                    } else {
-                        foundChain = true;
-                    }
-                } else {
-                    foundDeadEnd = true;
-                }
-            } while (auxX > 0 && auxY > 0 && !foundDeadEnd && !foundChain);
-        }
-        foundOpposite = foundDeadEnd = false;
-        if (foundChain) {
-            movements.addAll(auxEvts);
-        }
-        auxEvts.clear();
-        foundChain = false;
-        auxX = x;
-        auxY = y;
-        if (x < 7 && y < 7) {
-            do {
-                if (isPlayerChar(++auxX, ++auxY) && field[auxX][auxY] != currentTurnPlayer) {
-                    foundOpposite = true;
-                    auxEvts.add(new ReversiGameMovement(new Coordinate2D(auxX, auxY), currentTurnPlayer));
-                } else if (field[auxX][auxY] == currentTurnPlayer && foundOpposite) {
-                    if (!makeMove) {
-                        return movements;
-                    } else {
-                        foundChain = true;
-                    }
-                } else {
-                    foundDeadEnd = true;
-                }
-            } while (auxX < 7 && auxY < 7 && !foundDeadEnd && !foundChain);
-        }
-        if (foundChain) {
-            movements.addAll(auxEvts);
-        }
-        if (movements.isEmpty()) {
-            return null;
-        }
-        return movements;
-    }
-
-    private List<ReversiGameMovement> scanSecondaryDiagonal(int x, int y, boolean makeMove) {
-        boolean foundOpposite = false;
-        boolean foundDeadEnd = false;
-        boolean foundChain = false;
-        List<ReversiGameMovement> movements = new ArrayList<>();
-        List<ReversiGameMovement> auxEvts = new ArrayList<>();
-        int auxX = x;
-        int auxY = y;
-        if (x > 0 && y < 7) {
-            do {
-                if (isPlayerChar(--auxX, ++auxY) && field[auxX][auxY] != currentTurnPlayer) {
-                    foundOpposite = true;
-                    auxEvts.add(new ReversiGameMovement(new Coordinate2D(auxX, auxY), currentTurnPlayer));
-                } else if (field[auxX][auxY] == currentTurnPlayer && foundOpposite) {
-                    if (!makeMove) {
-                        return movements;
-                    } else {
-                        foundChain = true;
-                    }
-                } else {
-                    foundDeadEnd = true;
-                }
-            } while (auxX > 0 && auxY < 7 && !foundDeadEnd && !foundChain);
-        }
-        foundOpposite = foundDeadEnd = false;
-        if (foundChain) {
-            movements.addAll(auxEvts);
-        }
-        auxEvts.clear();
-        foundChain = false;
-        auxX = x;
-        auxY = y;
-        if (x < 7 && y > 0) {
-            do {
-                if (isPlayerChar(++auxX, --auxY) && field[auxX][auxY] != currentTurnPlayer) {
-                    foundOpposite = true;
-                    auxEvts.add(new ReversiGameMovement(new Coordinate2D(auxX, auxY), currentTurnPlayer));
-                } else if (field[auxX][auxY] == currentTurnPlayer && foundOpposite) {
-                    if (!makeMove) {
-                        return movements;
-                    } else {
-                        foundChain = true;
-                    }
-                } else {
-                    foundDeadEnd = true;
-                }
-            } while (auxX < 7 && auxY > 0 && !foundDeadEnd && !foundChain);
-        }
-        if (foundChain) {
-            movements.addAll(auxEvts);
-        }
-        if (movements.isEmpty()) {
-            return null;
-        }
-        return movements;
-    }
-
-    private boolean isPlayerChar(int x, int y) {
-        return field[x][y] == BLACK || field[x][y] == WHITE;
+        return board.isLegal(BitBoard.square(x, y));
     }
 
     public void printField() {
         for (int i = 0; i < 8; i++) {
             for (int j = 0; j < 8; j++) {
-                System.err.print(field[i][j] + "\t");
+                System.err.print(getCell(i, j) + "\t");
             }
             System.err.println("");
         }
@@ -538,29 +250,41 @@ public class ReversiGame {
 
     @Override
     public String toString() {
-        String fieldRepresentation = "";
+        StringBuilder fieldRepresentation = new StringBuilder(64);
         for (int i = 0; i < 8; i++) {
             for (int j = 0; j < 8; j++) {
-                fieldRepresentation += field[i][j];
+                fieldRepresentation.append(getCell(i, j));
             }
         }
-        return fieldRepresentation;
+        return fieldRepresentation.toString();
     }
 
     private boolean showHintsForCurrentPlayer() {
         return (currentTurnPlayer == BLACK && showHintsForBlack) || (currentTurnPlayer == WHITE && showHintsForWhite);
     }
 
-    private boolean previousPlayerHadHints() {
-        return (currentTurnPlayer == WHITE && showHintsForBlack) || (currentTurnPlayer == BLACK && showHintsForWhite);
+    private long getBlackDiscs() {
+        return (currentTurnPlayer == BLACK) ? (board.getPlayer()) : (board.getOpponent());
+    }
+
+    private long getWhiteDiscs() {
+        return (currentTurnPlayer == WHITE) ? (board.getPlayer()) : (board.getOpponent());
     }
 
     public char[][] getMatrixCopy() {
-        char[][] copy = new char[8][8];
-        for (int i = 0; i < 8; i++) {
-            System.arraycopy(field[i], 0, copy[i], 0, 8);
-        }
-        return copy;
+        return board.toMatrix(currentTurnPlayer);
+    }
+
+    public BitBoard getBoard() {
+        return board;
+    }
+
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    private char getCell(int x, int y) {
+        return board.getCell(BitBoard.square(x, y), currentTurnPlayer);
     }
 
     public char getCurrentPlayer() {
@@ -15,6 +15,10 @@ public abstract class ReversiGameAdapter implements ReversiGameListener {
     public void reversiGameBoardChanged(char evt) {
     }
 
+    @Override
+    public void reversiGameBoardUpdated(ReversiGameDiff diff) {
+    }
+
     @Override
     public void reversiGameTurnChanged(ReversiGameEvent evt) {
     }
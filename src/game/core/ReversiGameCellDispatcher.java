@@ -0,0 +1,34 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.core;
+
+import util.Coordinate2D;
+
+/**
+ * Keeps the old one-listener-per-cell API working on top of
+ * {@link ReversiGameDiff}: every changed square of a diff is handed to the
+ * listener of its cell as a {@link ReversiGameAction} character.
+ *
+ * @author filipe
+ */
+public class ReversiGameCellDispatcher extends ReversiGameAdapter {
+
+    private final ReversiGameListener[] cells = new ReversiGameListener[64];
+
+    public void setCellListener(Coordinate2D position, ReversiGameListener listener) {
+        cells[BitBoard.square(position.x, position.y)] = listener;
+    }
+
+    @Override
+    public void reversiGameBoardUpdated(ReversiGameDiff diff) {
+        for (long changed = diff.getChangedSquares(); changed != 0; changed &= changed - 1) {
+            int square = Long.numberOfTrailingZeros(changed);
+            if (cells[square] != null) {
+                cells[square].reversiGameBoardChanged(diff.getCellAfter(square));
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.core;
+
+import static game.core.ReversiGameAction.*;
+import java.util.EventObject;
+
+/**
+ * Everything one move, pass or resync did to the board, as bitboards of the
+ * black discs, white discs and hints shown before and after it (square
+ * {@code 8 * row + column}). Immutable, so it can be handed to any thread.
+ *
+ * @author filipe
+ */
+public class ReversiGameDiff extends EventObject {
+
+    private final long blackBefore;
+    private final long whiteBefore;
+    private final long hintsBefore;
+    private final long blackAfter;
+    private final long whiteAfter;
+    private final long hintsAfter;
+    private final boolean fullUpdate;
+
+    /**
+     * @param fullUpdate whether listeners should treat every square as
+     * changed, as when the game is loaded or restarted
+     */
+    public ReversiGameDiff(Object source, long blackBefore, long whiteBefore, long hintsBefore, long blackAfter,
+            long whiteAfter, long hintsAfter, boolean fullUpdate) {
+        super(source);
+        this.blackBefore = blackBefore;
+        this.whiteBefore = whiteBefore;
+        this.hintsBefore = hintsBefore;
+        this.blackAfter = blackAfter;
+        this.whiteAfter = whiteAfter;
+        this.hintsAfter = hintsAfter;
+        this.fullUpdate = fullUpdate;
+    }
+
+    public long getBlackBefore() {
+        return blackBefore;
+    }
+
+    public long getWhiteBefore() {
+        return whiteBefore;
+    }
+
+    public long getHintsBefore() {
+        return hintsBefore;
+    }
+
+    public long getBlackAfter() {
+        return blackAfter;
+    }
+
+    public long getWhiteAfter() {
+        return whiteAfter;
+    }
+
+    public long getHintsAfter() {
+        return hintsAfter;
+    }
+
+    public boolean isFullUpdate() {
+        return fullUpdate;
+    }
+
+    /**
+     * Squares whose content differs before and after, or every square for a
+     * full update.
+     */
+    public long getChangedSquares() {
+        if (fullUpdate) {
+            return BitBoard.FULL;
+        }
+        return (blackBefore ^ blackAfter) | (whiteBefore ^ whiteAfter) | (hintsBefore ^ hintsAfter);
+    }
+
+    /**
+     * Content of {@code square} after the change, as a
+     * {@link ReversiGameAction} character.
+     */
+    public char getCellAfter(int square) {
+        return getCell(square, blackAfter, whiteAfter, hintsAfter);
+    }
+
+    public char getCellBefore(int square) {
+        return getCell(square, blackBefore, whiteBefore, hintsBefore);
+    }
+
+    private static char getCell(int square, long black, long white, long hints) {
+        long bit = 1L << square;
+        if ((black & bit) != 0) {
+            return BLACK;
+        }
+        if ((white & bit) != 0) {
+            return WHITE;
+        }
+        return ((hints & bit) != 0) ? (HINT) : (NOTHING);
+    }
+}
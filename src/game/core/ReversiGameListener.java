@@ -13,5 +13,6 @@ import java.util.EventListener;
  */
 public interface ReversiGameListener extends EventListener {
     public void reversiGameBoardChanged(char evt);
+    public void reversiGameBoardUpdated(ReversiGameDiff diff);
     public void reversiGameTurnChanged(ReversiGameEvent evt);
 }
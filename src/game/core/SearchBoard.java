@@ -0,0 +1,123 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.core;
+
+import static game.core.ReversiGameAction.*;
+
+/**
+ * Mutable position for tree searches. Moves are applied in place and the
+ * flipped discs are kept on a stack, so undoing a move is a couple of XORs.
+ * A pass goes on the same stack as a move that flips nothing.
+ *
+ * @author filipe
+ */
+public final class SearchBoard {
+
+    private static final int MAX_PLY = 128;
+    private static final int PASS = -1;
+
+    private long player;
+    private long opponent;
+    private char playerToMove;
+    private long hash;
+    private final long[] flipStack;
+    private final long[] hashStack;
+    private final int[] moveStack;
+    private int ply;
+
+    public SearchBoard(BitBoard position, char playerToMove) {
+        flipStack = new long[MAX_PLY];
+        hashStack = new long[MAX_PLY];
+        moveStack = new int[MAX_PLY];
+        setPosition(position, playerToMove);
+    }
+
+    public void setPosition(BitBoard position, char playerToMove) {
+        player = position.getPlayer();
+        opponent = position.getOpponent();
+        this.playerToMove = playerToMove;
+        hash = Zobrist.hash(position, playerToMove);
+        ply = 0;
+    }
+
+    public long getPlayer() {
+        return player;
+    }
+
+    public long getOpponent() {
+        return opponent;
+    }
+
+    public char getPlayerToMove() {
+        return playerToMove;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public long getMoves() {
+        return BitBoard.getMoves(player, opponent);
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    public int getEmptyCount() {
+        return 64 - Long.bitCount(player | opponent);
+    }
+
+    public int getDiscDifference() {
+        return Long.bitCount(player) - Long.bitCount(opponent);
+    }
+
+    public long makeMove(int square) {
+        long move = 1L << square;
+        long flips = BitBoard.getFlips(player, opponent, square);
+        flipStack[ply] = flips;
+        hashStack[ply] = hash;
+        moveStack[ply] = square;
+        ply++;
+        hash ^= Zobrist.getDiscKey(square, playerToMove) ^ Zobrist.getFlipKey(flips) ^ Zobrist.WHITE_TO_MOVE;
+        long nextPlayer = opponent ^ flips;
+        opponent = player | flips | move;
+        player = nextPlayer;
+        switchPlayers();
+        return flips;
+    }
+
+    public void makePass() {
+        flipStack[ply] = 0;
+        hashStack[ply] = hash;
+        moveStack[ply] = PASS;
+        ply++;
+        hash ^= Zobrist.WHITE_TO_MOVE;
+        long nextPlayer = opponent;
+        opponent = player;
+        player = nextPlayer;
+        switchPlayers();
+    }
+
+    public void undoMove() {
+        ply--;
+        long flips = flipStack[ply];
+        long move = (moveStack[ply] == PASS) ? (0) : (1L << moveStack[ply]);
+        long previousPlayer = opponent ^ flips ^ move;
+        opponent = player | flips;
+        player = previousPlayer;
+        hash = hashStack[ply];
+        switchPlayers();
+    }
+
+    private void switchPlayers() {
+        playerToMove = (playerToMove == BLACK) ? (WHITE) : (BLACK);
+    }
+
+    public BitBoard toBitBoard() {
+        return new BitBoard(player, opponent);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.core;
+
+import static game.core.ReversiGameAction.*;
+import java.util.Random;
+
+/**
+ * Zobrist keys for Reversi positions. The random table comes from a fixed
+ * seed so keys stay the same between runs and can be stored on disk.
+ *
+ * @author filipe
+ */
+public final class Zobrist {
+
+    private static final long SEED = 0x5EED_0F_2EE7E25EL;
+    private static final long[] BLACK_KEYS = new long[64];
+    private static final long[] WHITE_KEYS = new long[64];
+    private static final long[] FLIP_KEYS = new long[64];
+    public static final long WHITE_TO_MOVE;
+
+    static {
+        Random random = new Random(SEED);
+        for (int square = 0; square < 64; square++) {
+            BLACK_KEYS[square] = random.nextLong();
+            WHITE_KEYS[square] = random.nextLong();
+            FLIP_KEYS[square] = BLACK_KEYS[square] ^ WHITE_KEYS[square];
+        }
+        WHITE_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    public static long hash(long black, long white, boolean blackToMove) {
+        long key = (blackToMove) ? (0) : (WHITE_TO_MOVE);
+        for (; black != 0; black &= black - 1) {
+            key ^= BLACK_KEYS[Long.numberOfTrailingZeros(black)];
+        }
+        for (; white != 0; white &= white - 1) {
+            key ^= WHITE_KEYS[Long.numberOfTrailingZeros(white)];
+        }
+        return key;
+    }
+
+    public static long hash(BitBoard position, char playerToMove) {
+        if (playerToMove == BLACK) {
+            return hash(position.getPlayer(), position.getOpponent(), true);
+        }
+        return hash(position.getOpponent(), position.getPlayer(), false);
+    }
+
+    public static long getDiscKey(int square, char color) {
+        return (color == BLACK) ? (BLACK_KEYS[square]) : (WHITE_KEYS[square]);
+    }
+
+    /**
+     * Key delta for turning every disc in {@code flips} to the other color.
+     */
+    public static long getFlipKey(long flips) {
+        long key = 0;
+        for (; flips != 0; flips &= flips - 1) {
+            key ^= FLIP_KEYS[Long.numberOfTrailingZeros(flips)];
+        }
+        return key;
+    }
+}
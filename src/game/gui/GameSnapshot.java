@@ -0,0 +1,61 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.gui;
+
+import game.core.ReversiGameDiff;
+import game.core.ReversiGameEvent;
+
+/**
+ * What the window shows at one point of the game: the discs and hints on
+ * the board as bitboards and the last turn event. Immutable, so it can be
+ * captured on the thread that changed the game and drawn on the Event
+ * Dispatch Thread.
+ *
+ * @author filipe
+ */
+public class GameSnapshot {
+
+    public static final GameSnapshot EMPTY = new GameSnapshot(0, 0, 0, null);
+
+    private final long blackDiscs;
+    private final long whiteDiscs;
+    private final long hints;
+    private final ReversiGameEvent turn;
+
+    public GameSnapshot(long blackDiscs, long whiteDiscs, long hints, ReversiGameEvent turn) {
+        this.blackDiscs = blackDiscs;
+        this.whiteDiscs = whiteDiscs;
+        this.hints = hints;
+        this.turn = turn;
+    }
+
+    public GameSnapshot withBoard(ReversiGameDiff diff) {
+        return new GameSnapshot(diff.getBlackAfter(), diff.getWhiteAfter(), diff.getHintsAfter(), turn);
+    }
+
+    public GameSnapshot withTurn(ReversiGameEvent turn) {
+        return new GameSnapshot(blackDiscs, whiteDiscs, hints, turn);
+    }
+
+    public long getBlackDiscs() {
+        return blackDiscs;
+    }
+
+    public long getWhiteDiscs() {
+        return whiteDiscs;
+    }
+
+    public long getHints() {
+        return hints;
+    }
+
+    /**
+     * The last turn event, or null before the first one.
+     */
+    public ReversiGameEvent getTurn() {
+        return turn;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.gui;
+
+import game.core.ReversiGameAdapter;
+import game.core.ReversiGameDiff;
+import game.core.ReversiGameEvent;
+import java.awt.EventQueue;
+import java.util.function.Consumer;
+import javax.swing.Timer;
+
+/**
+ * Carries game events, fired on whatever thread changed the game, to the
+ * window. Each event is folded into the latest {@link GameSnapshot}, and a
+ * Swing timer hands that snapshot to the view at most once per frame, on
+ * the Event Dispatch Thread; states superseded within a frame are never
+ * drawn. The timer stops when a frame passes without events.
+ *
+ * @author filipe
+ */
+public class GameViewUpdater extends ReversiGameAdapter {
+
+    private static final int FRAME_INTERVAL = 16;
+
+    private final Consumer<GameSnapshot> view;
+    private final Timer timer;
+    private GameSnapshot latest;
+    private boolean changed;
+    private boolean scheduled;
+
+    /**
+     * @param view applies a snapshot to the window; always called on the
+     * Event Dispatch Thread
+     */
+    public GameViewUpdater(Consumer<GameSnapshot> view) {
+        this.view = view;
+        latest = GameSnapshot.EMPTY;
+        timer = new Timer(FRAME_INTERVAL, evt -> deliver());
+        timer.setInitialDelay(0);
+    }
+
+    @Override
+    public void reversiGameBoardUpdated(ReversiGameDiff diff) {
+        synchronized (this) {
+            latest = latest.withBoard(diff);
+        }
+        schedule();
+    }
+
+    @Override
+    public void reversiGameTurnChanged(ReversiGameEvent evt) {
+        synchronized (this) {
+            latest = latest.withTurn(evt);
+        }
+        schedule();
+    }
+
+    private synchronized void schedule() {
+        changed = true;
+        if (!scheduled) {
+            scheduled = true;
+            EventQueue.invokeLater(timer::start);
+        }
+    }
+
+    private void deliver() {
+        GameSnapshot snapshot;
+        synchronized (this) {
+            if (!changed) {
+                timer.stop();
+                scheduled = false;
+                return;
+            }
+            changed = false;
+            snapshot = latest;
+        }
+        view.accept(snapshot);
+    }
+}
@@ -7,32 +7,36 @@ package game.gui;
 
 import game.config.AISettings;
 import game.ai.ComputerPlayer;
+import game.ai.SearchProgress;
 import game.core.ReversiGame;
 import game.core.ReversiGameAdapter;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.GridBagConstraints;
+import java.awt.EventQueue;
 import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Arrays;
+import java.util.Map;
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.JPanel;
 import javax.swing.JOptionPane;
-import util.Coordinate2D;
+import javax.swing.Timer;
 import static util.Paths.*;
 import static game.core.ReversiGameAction.*;
 import game.core.ReversiGameEvent;
 import java.awt.Frame;
-import java.awt.GridBagLayout;
-import javax.swing.JLabel;
-import util.RunningTools;
 
 /**
  *
@@ -40,139 +44,218 @@ import util.RunningTools;
  */
 public class GameWindow extends javax.swing.JFrame {
 
-    private class AuxiliarGUIEnhancements implements Runnable {
-        
-        private boolean isAITime;
-        private boolean running = true;
-        
-        public void stop() {
-            running = false;
+    /**
+     * Shows how far the computer got while it thinks. A Swing timer polls
+     * the latest search progress on the Event Dispatch Thread and stops
+     * itself once the computer has moved, so nothing runs while the human
+     * thinks.
+     */
+    private class ThinkingIndicator implements ActionListener {
+
+        private static final int REFRESH_INTERVAL = 150;
+
+        private final Timer timer;
+        private int frame;
+
+        public ThinkingIndicator() {
+            timer = new Timer(REFRESH_INTERVAL, this);
         }
 
+        /**
+         * Starts refreshing the label; safe to call from any thread.
+         */
         public void start() {
-            running = true;
+            EventQueue.invokeLater(() -> {
+                frame = 0;
+                timer.restart();
+            });
         }
-        
+
         @Override
-        public void run() {
-            int counter = 0;
-            while(!gameEngine.isFinished() && running) {
-                RunningTools.holdOn(200);
-                if (isAITime) {
-                    String reticences = "";
-                    for (int i = 0; i < counter; i++) {
-                        reticences += '.';
-                    }
-                    labelAIThinking.setText(reticences + "AI is thinking, wait" + reticences);
-                    if (counter <= 3) counter++; else counter = 0;
-                } else {
-                    counter = 1;
-                }
+        public void actionPerformed(ActionEvent e) {
+            if (!machine.isThinking()) {
+                timer.stop();
+                return;
+            }
+            String reticences = "...".substring(0, frame);
+            frame = (frame + 1) % 4;
+            SearchProgress progress = machine.getProgress();
+            if (progress == null || progress.getDepth() == 0) {
+                labelAIThinking.setText(reticences + "AI is thinking, wait" + reticences);
+            } else {
+                labelAIThinking.setText("<html><center>AI is thinking" + reticences + "<br>depth "
+                        + progress.getDepth() + ", " + formatNodeCount(progress.getNodeCount()) + " nodes, "
+                        + String.format("%.1f s", progress.getElapsedMillis() / 1000.0) + "</center></html>");
             }
         }
-        
+
+        private String formatNodeCount(long nodes) {
+            if (nodes >= 1000000) {
+                return String.format("%.1fM", nodes / 1000000.0);
+            }
+            if (nodes >= 1000) {
+                return String.format("%.1fk", nodes / 1000.0);
+            }
+            return String.valueOf(nodes);
+        }
     }
-    
-    private class BoardCell extends JPanel {
 
-        private Coordinate2D position;
+    /**
+     * The whole 8x8 board in one component. Cells are drawn into a back
+     * buffer, and only the cells marked dirty since the last paint are
+     * redrawn there; the screen repaints just the rectangles of those cells.
+     * The images come from the {@link SpriteCache} already scaled to the
+     * cell; until the scaled copies of a new size are ready, the originals
+     * are drawn scaled on the fly and redrawn once the copies arrive.
+     * Everything here runs on the Event Dispatch Thread.
+     */
+    private class BoardView extends JPanel {
+
+        private final char[] squares;
+        private long dirty;
+        private BufferedImage buffer;
         private int side;
-        private JLabel imageLabel;
-        private Image currentImage;
 
-        public BoardCell(Coordinate2D position, int side) {
-            this.position = position;
-            this.side = side;
+        public BoardView() {
+            squares = new char[64];
+            Arrays.fill(squares, NOTHING);
+            dirty = -1L;
             initComponent();
         }
 
         private void initComponent() {
             setBackground(new Color(204, 0, 0));
+            setOpaque(true);
             addMouseListener(new MouseAdapter() {
                 @Override
                 public void mouseClicked(MouseEvent e) {
-                    //console.append("LOL OLHA ISSO: " + panel.getPosition() + "\n");
-                    gameEngine.put(position.x, position.y, humanColor);
+                    if (side == 0 || e.getX() >= 8 * side || e.getY() >= 8 * side) {
+                        return;
+                    }
+                    gameEngine.put(e.getY() / side, e.getX() / side, humanColor);
                 }
             });
-            setLayout(new GridBagLayout());
-            imageLabel = new JLabel();
-            updateLabelImage(null);
-            add(imageLabel);
-            gameEngine.addReversiGameListener(new ReversiGameAdapter() {
-                @Override
-                public void reversiGameBoardChanged(char evt) {
-                    updateLabelFromEvent(evt);
-                }
-            }, position);
         }
 
-        @Override
-        public void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            if (cellBackground != null) {
-                g.drawImage(cellBackground, 0, 0, this.side, this.side, this);
+        /**
+         * Resizes the board to cells of {@code newSide} pixels; every cell is
+         * drawn again on the next paint.
+         */
+        public void setCellSide(int newSide) {
+            if (newSide == side) {
+                return;
             }
+            side = newSide;
+            Dimension size = new Dimension(8 * side, 8 * side);
+            setSize(size);
+            setPreferredSize(size);
+            setMinimumSize(size);
+            setMaximumSize(size);
+            buffer = null;
+            redrawAll();
+            spriteCache.prepare(side, this::redrawAll);
         }
 
-        public void setPosition(Coordinate2D pos) {
-            position = pos;
+        private void redrawAll() {
+            dirty = -1L;
+            repaint();
         }
 
-        public Coordinate2D getPosition() {
-            return position;
+        /**
+         * Shows the board of {@code snapshot}, repainting only the cells
+         * that differ from what is on screen.
+         */
+        public void showBoard(GameSnapshot snapshot) {
+            long changed = 0;
+            for (int square = 0; square < 64; square++) {
+                char content = getContent(snapshot, 1L << square);
+                if (squares[square] != content) {
+                    squares[square] = content;
+                    changed |= 1L << square;
+                }
+            }
+            dirty |= changed;
+            for (; changed != 0; changed &= changed - 1) {
+                int square = Long.numberOfTrailingZeros(changed);
+                repaint((square & 7) * side, (square >>> 3) * side, side, side);
+            }
         }
 
-        public void setSideSize(int newSize) {
-            side = newSize;
+        @Override
+        public void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            if (side == 0) {
+                return;
+            }
+            if (buffer == null) {
+                buffer = getGraphicsConfiguration().createCompatibleImage(8 * side, 8 * side, Transparency.OPAQUE);
+                dirty = -1L;
+            }
+            long cells = dirty;
+            dirty = 0;
+            if (cells != 0) {
+                Map<String, BufferedImage> sprites = spriteCache.getScaled(side);
+                Graphics2D bufferGraphics = buffer.createGraphics();
+                bufferGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                for (; cells != 0; cells &= cells - 1) {
+                    drawCell(bufferGraphics, Long.numberOfTrailingZeros(cells), sprites);
+                }
+                bufferGraphics.dispose();
+            }
+            g.drawImage(buffer, 0, 0, null);
         }
 
-        public int getSideSize() {
-            return side;
+        private void drawCell(Graphics2D g, int square, Map<String, BufferedImage> sprites) {
+            int x = (square & 7) * side;
+            int y = (square >>> 3) * side;
+            g.setColor(getBackground());
+            g.fillRect(x, y, side, side);
+            drawSprite(g, SpriteCache.CELL_BACKGROUND, x, y, sprites);
+            String piece = getPieceSprite(squares[square]);
+            if (piece != null) {
+                drawSprite(g, piece, x, y, sprites);
+            }
         }
 
-        private void updateLabelFromEvent(char event) {
-            switch (event) {
-                case NOTHING:
-                    updateLabelImage(null);
-                    break;
-                case BLACK:
-                    updateLabelImage(black);
-                    break;
-                case WHITE:
-                    updateLabelImage(white);
-                    break;
-                case HINT:
-                    updateLabelImage(hint);
+        private void drawSprite(Graphics2D g, String name, int x, int y, Map<String, BufferedImage> sprites) {
+            BufferedImage sprite = (sprites != null) ? (sprites.get(name)) : (spriteCache.getOriginal(name));
+            if (sprite != null) {
+                g.drawImage(sprite, x, y, side, side, null);
             }
         }
 
-        public void updateLabelImage(Image newImage) {
-            currentImage = newImage;
-            updateLabelSize();
+        private char getContent(GameSnapshot snapshot, long bit) {
+            if ((snapshot.getBlackDiscs() & bit) != 0) {
+                return BLACK;
+            }
+            if ((snapshot.getWhiteDiscs() & bit) != 0) {
+                return WHITE;
+            }
+            return ((snapshot.getHints() & bit) != 0) ? (HINT) : (NOTHING);
         }
 
-        public void updateLabelSize() {
-            if (currentImage != null) {
-                imageLabel.setIcon(getImageIconFromImage(scaleImage(currentImage, this.side)));
-            } else {
-                imageLabel.setIcon(null);
+        private String getPieceSprite(char content) {
+            switch (content) {
+                case BLACK:
+                    return SpriteCache.BLACK_PIECE;
+                case WHITE:
+                    return SpriteCache.WHITE_PIECE;
+                case HINT:
+                    return SpriteCache.HINT;
+                default:
+                    return null;
             }
         }
-
     }
 
-    private HashMap<Coordinate2D, BoardCell> posicoes;
-    private Image cellBackground;
-    private Image black;
-    private Image white;
-    private Image hint;
+    private BoardView boardView;
+    private SpriteCache spriteCache;
     private ReversiGame gameEngine;
     private ComputerPlayer machine;
     private char humanColor;
     private boolean showHumanHints;
     private boolean showMachineHints;
-    private AuxiliarGUIEnhancements labelWatchdog;
+    private ThinkingIndicator thinkingIndicator;
 
     /**
      * Creates new form GameWindow
@@ -420,24 +503,12 @@ public class GameWindow extends javax.swing.JFrame {
 
     private void startGame() {
         gameEngine.syncGameChanges();
-        startAI();
-    }
-    
-    private void startAI() {
-        Thread machineThread = new Thread(machine);
-        machineThread.start();
-        Thread guiAuxThread = new Thread(labelWatchdog);
-        guiAuxThread.start();
     }
 
     private void loadImages() {
-        try {
-            black = ImageIO.read(new File(IMAGES_DIR + "black.png"));
-            white = ImageIO.read(new File(IMAGES_DIR + "white.png"));
-            hint = ImageIO.read(new File(IMAGES_DIR + "hint.png"));
-        } catch (IOException e) {
+        spriteCache = SpriteCache.getInstance();
+        if (!spriteCache.isComplete()) {
             JOptionPane.showMessageDialog(null, "I couldn't load your images :(", "Aw snap!", JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
         }
     }
 
@@ -467,11 +538,8 @@ public class GameWindow extends javax.swing.JFrame {
     }//GEN-LAST:event_formWindowStateChanged
 
     private void btnRestartActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnRestartActionPerformed
+        machine.cancelSearch();
         gameEngine.resetGame();
-        machine.stop();
-        machine.start();
-        labelWatchdog.stop();
-        labelWatchdog.start();
         startGame();
     }//GEN-LAST:event_btnRestartActionPerformed
 
@@ -558,18 +626,10 @@ public class GameWindow extends javax.swing.JFrame {
         AISettings settings = new AISettings();
         settings.loadDefaultPreset("normal");
         machine = new ComputerPlayer(WHITE, gameEngine, settings);
-        labelWatchdog = new AuxiliarGUIEnhancements();
+        thinkingIndicator = new ThinkingIndicator();
         loadImages();
     }
 
-    private void loadDefaultCellBackground(int side) {
-        try {
-            cellBackground = ImageIO.read(new File(IMAGES_DIR + "empty_red.png"));
-        } catch (IOException ex) {
-            Logger.getLogger(GameWindow.class.getName()).log(Level.SEVERE, null, ex);
-        }
-    }
-
     private int getSmallestContainerDimension() {
         int sizeX = boardContainer.getSize().width;
         int sizeY = boardContainer.getSize().height;
@@ -582,56 +642,47 @@ public class GameWindow extends javax.swing.JFrame {
 
     private void adjustBoardSize() {
         int side = getSmallestContainerDimension();
-        loadDefaultCellBackground(side);
         side += 8;
         board.setSize(new Dimension(side, side));
         board.setPreferredSize(new Dimension(side, side));
         board.setMinimumSize(new Dimension(side, side));
         board.setMaximumSize(new Dimension(side, side));
         side -= 8;
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Coordinate2D position = new Coordinate2D(i, j);
-                BoardCell currentCell = posicoes.get(position);
-                currentCell.setSize(new Dimension(side / 8, side / 8));
-                currentCell.setSideSize(side / 8);
-                currentCell.setPreferredSize(new Dimension(side / 8, side / 8));
-                currentCell.setMinimumSize(new Dimension(side / 8, side / 8));
-                currentCell.setMaximumSize(new Dimension(side / 8, side / 8));
-                currentCell.updateLabelSize();
-            }
-        }
+        boardView.setCellSide(side / 8);
         revalidate();
         repaint();
     }
 
     private void createBoard() {
-        posicoes = new HashMap<>();
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Coordinate2D position = new Coordinate2D(i, j);
-                BoardCell panel = new BoardCell(position, getSmallestContainerDimension() / 8);
-                GridBagConstraints constraints = new GridBagConstraints();
-                constraints.gridx = j;
-                constraints.gridy = i;
-                board.add(panel, constraints);
-                posicoes.put(position, panel);
-            }
-        }
-        labelBlackPiece.setIcon(getImageIconFromImage(scaleImage(black, 48)));
-        labelWhitePiece.setIcon(getImageIconFromImage(scaleImage(white, 48)));
+        boardView = new BoardView();
+        board.add(boardView, new GridBagConstraints());
+        labelBlackPiece.setIcon(getImageIconFromImage(scaleImage(spriteCache.getOriginal(SpriteCache.BLACK_PIECE), 48)));
+        labelWhitePiece.setIcon(getImageIconFromImage(scaleImage(spriteCache.getOriginal(SpriteCache.WHITE_PIECE), 48)));
         adjustBoardSize();
+        gameEngine.addReversiGameListener(new GameViewUpdater(this::updateGUI));
         gameEngine.addReversiGameListener(new ReversiGameAdapter() {
             @Override
             public void reversiGameTurnChanged(ReversiGameEvent evt) {
-                updateGUI(evt);
+                if (evt.getCurrentActivePlayer() == WHITE) {
+                    machine.giveTurn(evt);
+                    thinkingIndicator.start();
+                }
             }
         });
         revalidate();
         repaint();
     }
 
-    private void updateGUI(ReversiGameEvent evt) {
+    /**
+     * Shows a snapshot of the game; runs on the Event Dispatch Thread, fed by
+     * the {@link GameViewUpdater}.
+     */
+    private void updateGUI(GameSnapshot snapshot) {
+        boardView.showBoard(snapshot);
+        ReversiGameEvent evt = snapshot.getTurn();
+        if (evt == null) {
+            return;
+        }
         String player = (evt.getCurrentActivePlayer() == BLACK) ? ("BLACK") : ("WHITE");
         if (evt.getHints().isEmpty()) {
             btnPassTurn.setText(player + " IS OUT OF MOVES");
@@ -639,12 +690,9 @@ public class GameWindow extends javax.swing.JFrame {
             btnPassTurn.setText("IT'S " + player + "'s TURN");
         }
         if (evt.getCurrentActivePlayer() == BLACK) {
-            labelWatchdog.isAITime = false;
             labelAIThinking.setText("");
         } else {
-            labelWatchdog.isAITime = true;
             labelAIThinking.setText("AI is thinking, wait");
-            machine.giveTurn(evt);
         }
         if (!evt.isGamePlayable()) {
             btnPassTurn.setText("GAME FINISHED!!!");
@@ -659,7 +707,5 @@ public class GameWindow extends javax.swing.JFrame {
         labelWhiteScore.setText(evt.getWhiteScore() + "");
         progressBlack.setValue(evt.getBlackScore());
         progressWhite.setValue(evt.getWhiteScore());
-        revalidate();
-        repaint();
     }
 }
@@ -0,0 +1,164 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.gui;
+
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+import static util.Paths.*;
+
+/**
+ * The board images, read from {@code res/images} once and kept decoded,
+ * with copies scaled to the cell size in the format of the screen, so
+ * painting a cell is a plain copy. Scaling runs on a background thread,
+ * once per size; only the last {@code MAX_SIZES} sizes are kept, and a
+ * size that was asked for but superseded by another before its turn came
+ * is never scaled.
+ *
+ * @author filipe
+ */
+public class SpriteCache {
+
+    public static final String CELL_BACKGROUND = "empty_red.png";
+    public static final String BLACK_PIECE = "black.png";
+    public static final String WHITE_PIECE = "white.png";
+    public static final String HINT = "hint.png";
+
+    private static final String[] SPRITES = {CELL_BACKGROUND, BLACK_PIECE, WHITE_PIECE, HINT};
+    private static final int MAX_SIZES = 2;
+
+    private static SpriteCache instance;
+
+    private final Map<String, BufferedImage> originals;
+    private final Map<Integer, Map<String, BufferedImage>> scaled;
+    private final ExecutorService scaler;
+    private volatile int requestedSide;
+
+    private SpriteCache() {
+        originals = new HashMap<>();
+        for (String name : SPRITES) {
+            try {
+                BufferedImage image = ImageIO.read(new File(IMAGES_DIR + name));
+                if (image != null) {
+                    originals.put(name, image);
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(SpriteCache.class.getName()).log(Level.SEVERE, "Couldn't read " + name, ex);
+            }
+        }
+        scaled = new LinkedHashMap<Integer, Map<String, BufferedImage>>(4, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Map<String, BufferedImage>> eldest) {
+                return size() > MAX_SIZES;
+            }
+        };
+        scaler = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Sprite scaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static synchronized SpriteCache getInstance() {
+        if (instance == null) {
+            instance = new SpriteCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Whether every image could be read.
+     */
+    public boolean isComplete() {
+        return originals.size() == SPRITES.length;
+    }
+
+    /**
+     * The image as decoded, or null when it couldn't be read.
+     */
+    public BufferedImage getOriginal(String name) {
+        return originals.get(name);
+    }
+
+    /**
+     * The images scaled to {@code side} pixels, or null when that size is not
+     * ready yet.
+     */
+    public synchronized Map<String, BufferedImage> getScaled(int side) {
+        return scaled.get(side);
+    }
+
+    /**
+     * Scales the images to {@code side} pixels in the background, unless that
+     * size is cached already, then runs {@code onReady} on the Event Dispatch
+     * Thread. A later request for another size makes this one skip its work
+     * if it hasn't started.
+     */
+    public void prepare(int side, Runnable onReady) {
+        requestedSide = side;
+        if (getScaled(side) != null) {
+            EventQueue.invokeLater(onReady);
+            return;
+        }
+        scaler.submit(() -> {
+            if (side != requestedSide) {
+                return;
+            }
+            Map<String, BufferedImage> sprites = new HashMap<>();
+            for (Map.Entry<String, BufferedImage> original : originals.entrySet()) {
+                sprites.put(original.getKey(), scale(original.getValue(), side));
+            }
+            synchronized (this) {
+                scaled.put(side, sprites);
+            }
+            EventQueue.invokeLater(onReady);
+        });
+    }
+
+    /**
+     * Halves the image until one more halving would go below the target,
+     * then draws it at the target size; a single bilinear step from a large
+     * image skips most of its pixels and looks jagged.
+     */
+    private static BufferedImage scale(BufferedImage image, int side) {
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = (width / 2 >= side) ? (width / 2) : (side);
+            height = (height / 2 >= side) ? (height / 2) : (side);
+            BufferedImage next = createCompatibleImage(width, height);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, width, height, null);
+            g.dispose();
+            current = next;
+        } while (width != side || height != side);
+        return current;
+    }
+
+    private static BufferedImage createCompatibleImage(int width, int height) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.tools;
+
+import game.ai.OpeningBook;
+import game.ai.SearchEngine;
+import game.ai.SearchEngines;
+import game.ai.TranspositionTable;
+import game.config.AISettings;
+import game.config.AISettingsLoader;
+import game.core.BitBoard;
+import game.core.Zobrist;
+import static game.ai.TranspositionTable.NO_MOVE;
+import static game.core.ReversiGameAction.*;
+import static util.Paths.*;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the opening book by searching the early positions the computer
+ * can meet. From the start position, the side the book plays for only
+ * follows its best move, while every reply of the other side is expanded,
+ * and this is done once for each colour. Positions of one ply are searched
+ * in parallel with fixed-depth minimax, each on its own table.
+ *
+ * Usage: OpeningBookGenerator [plies] [depth] [threads] [preset] [output]
+ *
+ * @author filipe
+ */
+public class OpeningBookGenerator {
+
+    private static class BookEntry {
+
+        private final BitBoard board;
+        private final char playerToMove;
+        private final long key;
+        private int move;
+        private int score;
+
+        private BookEntry(BitBoard board, char playerToMove) {
+            this.board = board;
+            this.playerToMove = playerToMove;
+            key = Zobrist.hash(board, playerToMove);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        int plies = (args.length > 0) ? (Integer.parseInt(args[0])) : (10);
+        int depth = (args.length > 1) ? (Integer.parseInt(args[1])) : (10);
+        int threads = (args.length > 2) ? (Integer.parseInt(args[2])) : (Runtime.getRuntime().availableProcessors());
+        String preset = (args.length > 3) ? (args[3]) : ("insane");
+        String output = (args.length > 4) ? (args[4]) : (OPENING_BOOK_DIR);
+        AISettings settings = createSettings(preset, depth);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Map<Long, BookEntry> book = new HashMap<>();
+        long start = System.nanoTime();
+        try {
+            for (char bookSide : new char[]{BLACK, WHITE}) {
+                List<BookEntry> level = new ArrayList<>();
+                level.add(new BookEntry(new BitBoard(0x0000000810000000L, 0x0000001008000000L), BLACK));
+                for (int ply = 0; ply < plies && !level.isEmpty(); ply++) {
+                    searchLevel(level, book, settings, depth, pool);
+                    level = expandLevel(level, book, bookSide);
+                    System.out.println("Playing " + bookSide + ", ply " + ply + ": " + book.size() + " entries, "
+                            + (System.nanoTime() - start) / 1000000 + " ms");
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        writeBook(book, output);
+        System.out.println("Wrote " + book.size() + " entries to " + output);
+    }
+
+    private static AISettings createSettings(String preset, int depth) {
+        int[] configurations = AISettingsLoader.getInstance().getLevelSettings(preset);
+        configurations = Arrays.copyOf(configurations, configurations.length);
+        configurations[0] = depth;
+        AISettings settings = new AISettings(configurations);
+        settings.calculateBiasMatrix();
+        settings.setSearchAlgorithm(SearchEngines.MINIMAX);
+        return settings;
+    }
+
+    /**
+     * Searches every position of the level that is not in the book yet and
+     * adds it.
+     */
+    private static void searchLevel(List<BookEntry> level, Map<Long, BookEntry> book, AISettings settings, int depth,
+            ExecutorService pool) throws InterruptedException, ExecutionException {
+        List<Callable<BookEntry>> searches = new ArrayList<>();
+        for (BookEntry entry : level) {
+            if (!book.containsKey(entry.key)) {
+                searches.add(() -> {
+                    TranspositionTable table = new TranspositionTable(settings.getHashSizeMB());
+                    SearchEngine engine = SearchEngines.create(entry.board, settings, entry.playerToMove, table);
+                    for (int d = 1; d <= depth; d++) {
+                        entry.score = engine.search(d, SearchEngine.NO_DEADLINE);
+                    }
+                    entry.move = engine.getBestMove();
+                    return entry;
+                });
+            }
+        }
+        for (Future<BookEntry> result : pool.invokeAll(searches)) {
+            BookEntry entry = result.get();
+            if (entry.move != NO_MOVE) {
+                book.put(entry.key, entry);
+            }
+        }
+    }
+
+    private static List<BookEntry> expandLevel(List<BookEntry> level, Map<Long, BookEntry> book, char bookSide) {
+        Map<Long, BookEntry> next = new HashMap<>();
+        for (BookEntry entry : level) {
+            BookEntry searched = book.get(entry.key);
+            if (searched == null) {
+                continue;
+            }
+            long moves = (entry.playerToMove == bookSide) ? (1L << searched.move) : (entry.board.getMoves());
+            while (moves != 0) {
+                int square = Long.numberOfTrailingZeros(moves);
+                moves &= moves - 1;
+                BitBoard child = entry.board.play(square);
+                char childToMove = (entry.playerToMove == BLACK) ? (WHITE) : (BLACK);
+                if (child.getMoves() == 0) {
+                    child = child.pass();
+                    childToMove = entry.playerToMove;
+                }
+                if (child.getMoves() != 0) {
+                    BookEntry childEntry = new BookEntry(child, childToMove);
+                    next.putIfAbsent(childEntry.key, childEntry);
+                }
+            }
+        }
+        return new ArrayList<>(next.values());
+    }
+
+    private static void writeBook(Map<Long, BookEntry> book, String output) throws IOException {
+        List<BookEntry> sorted = new ArrayList<>(book.values());
+        sorted.sort((first, second) -> Long.compare(first.key, second.key));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(sorted.size());
+            for (BookEntry entry : sorted) {
+                out.writeLong(entry.key);
+                out.writeShort(entry.move);
+                out.writeShort(entry.score);
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.tools;
+
+import game.ai.EndgameSolver;
+import game.ai.PatternEvaluator;
+import game.ai.SearchEngine;
+import game.ai.SearchEngines;
+import game.ai.TranspositionTable;
+import game.config.AISettings;
+import game.config.AISettingsLoader;
+import game.core.BitBoard;
+import static game.ai.PatternEvaluator.*;
+import static game.ai.TranspositionTable.NO_MOVE;
+import static game.core.ReversiGameAction.*;
+import static util.Paths.*;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fits the weights of {@link PatternEvaluator} to game results. Training
+ * games are played by a shallow search with some random moves for variety
+ * until few squares are empty, then finished with perfect play from the
+ * endgame solver. Every position of a game is labelled with the exact
+ * final disc difference reached from it, seen from its side to move, and
+ * the weights of each phase are fitted by stochastic gradient descent on
+ * the squared error, with a learning rate that shrinks every epoch. One game in ten is kept aside to report the error on
+ * positions the fit has not seen.
+ *
+ * Usage: PatternTrainer [games] [solveEmpties] [epochs] [threads] [output]
+ *
+ * @author filipe
+ */
+public class PatternTrainer {
+
+    private static final long GAMES_SEED = 20170611L;
+    private static final int SEARCH_DEPTH = 2;
+    private static final double RANDOM_MOVE_RATE = 0.05;
+    private static final int RANDOM_OPENING_PLIES = 8;
+    private static final float LEARNING_RATE = 0.004f;
+    private static final float SCALAR_LEARNING_RATE = LEARNING_RATE / 256;
+
+    private static class Sample {
+
+        private final long player;
+        private final long opponent;
+        private final int score;
+
+        private Sample(long player, long opponent, int score) {
+            this.player = player;
+            this.opponent = opponent;
+            this.score = score;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        int games = (args.length > 0) ? (Integer.parseInt(args[0])) : (20000);
+        int solveEmpties = (args.length > 1) ? (Integer.parseInt(args[1])) : (12);
+        int epochs = (args.length > 2) ? (Integer.parseInt(args[2])) : (12);
+        int threads = (args.length > 3) ? (Integer.parseInt(args[3])) : (Runtime.getRuntime().availableProcessors());
+        String output = (args.length > 4) ? (args[4]) : (PATTERN_WEIGHTS_DIR);
+        long start = System.nanoTime();
+        List<Sample> training = new ArrayList<>();
+        List<Sample> validation = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<List<Sample>>> tasks = new ArrayList<>();
+            for (int game = 0; game < games; game++) {
+                long seed = GAMES_SEED + game;
+                tasks.add(() -> playGame(seed, solveEmpties));
+            }
+            List<Future<List<Sample>>> results = pool.invokeAll(tasks);
+            for (int game = 0; game < games; game++) {
+                ((game % 10 == 9) ? (validation) : (training)).addAll(results.get(game).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println("Played " + games + " games, " + training.size() + " training and " + validation.size()
+                + " validation positions in " + (System.nanoTime() - start) / 1000000 + " ms");
+        float[][] weights = new float[PHASES][TABLE_SIZE];
+        int[] indexes = new int[FEATURE_COUNT];
+        int[] features = new int[SCALAR_FEATURE_COUNT];
+        Random random = new Random(GAMES_SEED);
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            Collections.shuffle(training, random);
+            float learningRate = LEARNING_RATE / (1 + epoch);
+            float scalarLearningRate = SCALAR_LEARNING_RATE / (1 + epoch);
+            double squaredError = 0;
+            for (Sample sample : training) {
+                float[] phaseWeights = weights[getPhase(sample.player, sample.opponent)];
+                getIndexes(sample.player, sample.opponent, indexes);
+                getScalarFeatures(sample.player, sample.opponent, features);
+                float error = sample.score - predict(phaseWeights, indexes, features);
+                squaredError += error * error;
+                for (int index : indexes) {
+                    phaseWeights[index] += learningRate * error;
+                }
+                for (int i = 0; i < SCALAR_FEATURE_COUNT; i++) {
+                    phaseWeights[SCALAR_FEATURES + i] += scalarLearningRate * error * features[i];
+                }
+            }
+            System.out.println(String.format("Epoch %d: training error %.2f discs, validation error %.2f discs",
+                    epoch + 1, Math.sqrt(squaredError / training.size()), getError(weights, validation)));
+        }
+        writeWeights(weights, output);
+        System.out.println("Wrote " + output);
+    }
+
+    /**
+     * Plays one training game and returns its positions labelled with the
+     * exact result, once the endgame solver has seen the end of it.
+     */
+    private static List<Sample> playGame(long seed, int solveEmpties) {
+        Random random = new Random(seed);
+        AISettings settings = createSettings();
+        TranspositionTable table = new TranspositionTable(1);
+        List<BitBoard> positions = new ArrayList<>();
+        List<Character> sides = new ArrayList<>();
+        BitBoard board = new BitBoard(0x0000000810000000L, 0x0000001008000000L);
+        char playerToMove = BLACK;
+        while (board.getEmptyCount() > solveEmpties) {
+            long moves = board.getMoves();
+            if (moves == 0) {
+                board = board.pass();
+                playerToMove = (playerToMove == BLACK) ? (WHITE) : (BLACK);
+                moves = board.getMoves();
+                if (moves == 0) {
+                    break;
+                }
+            }
+            positions.add(board);
+            sides.add(playerToMove);
+            int square = NO_MOVE;
+            if (positions.size() > RANDOM_OPENING_PLIES && random.nextDouble() >= RANDOM_MOVE_RATE) {
+                SearchEngine engine = SearchEngines.create(board, settings, playerToMove, table);
+                engine.search(SEARCH_DEPTH, SearchEngine.NO_DEADLINE);
+                square = engine.getBestMove();
+            }
+            if (square == NO_MOVE) {
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                square = Long.numberOfTrailingZeros(moves);
+            }
+            board = board.play(square);
+            playerToMove = (playerToMove == BLACK) ? (WHITE) : (BLACK);
+        }
+        List<Sample> samples = new ArrayList<>();
+        if (board.getMoves() == 0) {
+            board = board.pass();
+            playerToMove = (playerToMove == BLACK) ? (WHITE) : (BLACK);
+        }
+        int finalScore = board.getPlayerCount() - board.getOpponentCount();
+        char scoredSide = playerToMove;
+        boolean first = true;
+        // Perfect play to the end, labelling every position on the way.
+        while (board.getMoves() != 0) {
+            EndgameSolver solver = new EndgameSolver(board, playerToMove, table);
+            int score = solver.solve(false, SearchEngine.NO_DEADLINE);
+            if (first) {
+                finalScore = score;
+                scoredSide = playerToMove;
+                first = false;
+            }
+            samples.add(new Sample(board.getPlayer(), board.getOpponent(), score));
+            board = board.play(solver.getBestMove());
+            playerToMove = (playerToMove == BLACK) ? (WHITE) : (BLACK);
+            if (board.getMoves() == 0) {
+                board = board.pass();
+                playerToMove = (playerToMove == BLACK) ? (WHITE) : (BLACK);
+            }
+        }
+        for (int i = 0; i < positions.size(); i++) {
+            BitBoard position = positions.get(i);
+            int score = (sides.get(i) == scoredSide) ? (finalScore) : (-finalScore);
+            samples.add(new Sample(position.getPlayer(), position.getOpponent(), score));
+        }
+        return samples;
+    }
+
+    private static AISettings createSettings() {
+        int[] configurations = AISettingsLoader.getInstance().getLevelSettings("insane");
+        configurations = Arrays.copyOf(configurations, configurations.length);
+        configurations[0] = SEARCH_DEPTH;
+        AISettings settings = new AISettings(configurations);
+        settings.calculateBiasMatrix();
+        settings.setSearchAlgorithm(SearchEngines.PVS);
+        settings.setEvaluator(SearchEngines.DISC_EVALUATOR);
+        return settings;
+    }
+
+    private static float predict(float[] phaseWeights, int[] indexes, int[] features) {
+        float sum = 0;
+        for (int index : indexes) {
+            sum += phaseWeights[index];
+        }
+        for (int i = 0; i < SCALAR_FEATURE_COUNT; i++) {
+            sum += phaseWeights[SCALAR_FEATURES + i] * features[i];
+        }
+        return sum;
+    }
+
+    private static double getError(float[][] weights, List<Sample> samples) {
+        int[] indexes = new int[FEATURE_COUNT];
+        int[] features = new int[SCALAR_FEATURE_COUNT];
+        double squaredError = 0;
+        for (Sample sample : samples) {
+            getIndexes(sample.player, sample.opponent, indexes);
+            getScalarFeatures(sample.player, sample.opponent, features);
+            float error = sample.score - predict(weights[getPhase(sample.player, sample.opponent)], indexes, features);
+            squaredError += error * error;
+        }
+        return Math.sqrt(squaredError / Math.max(1, samples.size()));
+    }
+
+    private static void writeWeights(float[][] weights, String output) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(PHASES);
+            out.writeInt(TABLE_SIZE);
+            for (float[] phaseWeights : weights) {
+                for (float weight : phaseWeights) {
+                    int scaled = Math.round(weight * WEIGHT_SCALE);
+                    out.writeShort(Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.tools;
+
+import game.ai.ProbCut;
+import game.ai.ReversiMiniMax;
+import game.ai.SearchEngine;
+import game.ai.TranspositionTable;
+import game.config.AISettings;
+import game.config.AISettingsLoader;
+import game.core.BitBoard;
+import static game.ai.ProbCut.*;
+import static game.core.ReversiGameAction.*;
+import static util.Paths.*;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fits the {@link ProbCut} regressions. Every position of a seeded set is
+ * searched by {@link ReversiMiniMax} at depth 1, 2, ... up to the maximum
+ * depth without any pruning, which gives the score of the shallow and of
+ * the deep search for every depth the cut is tried at. For each bucket of
+ * empty squares and each depth, the deep scores are regressed on the
+ * shallow ones by least squares, and the deviation of the residuals is
+ * what the search uses as its confidence interval.
+ *
+ * Usage: ProbCutFitter [positions] [maxDepth] [threads] [preset] [output]
+ *
+ * @author filipe
+ */
+public class ProbCutFitter {
+
+    private static final long POSITIONS_SEED = 20170611L;
+    private static final int MIN_EMPTIES = 12;
+    private static final int MAX_EMPTIES = 58;
+    private static final int MIN_SAMPLES = 30;
+
+    private static class Sample {
+
+        private final int empties;
+        private final int[] scores;
+
+        private Sample(int empties, int[] scores) {
+            this.empties = empties;
+            this.scores = scores;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        int positionCount = (args.length > 0) ? (Integer.parseInt(args[0])) : (1200);
+        int maxDepth = (args.length > 1) ? (Integer.parseInt(args[1])) : (10);
+        int threads = (args.length > 2) ? (Integer.parseInt(args[2])) : (Runtime.getRuntime().availableProcessors());
+        String preset = (args.length > 3) ? (args[3]) : ("insane");
+        String output = (args.length > 4) ? (args[4]) : (PROBCUT_DIR);
+        int depthLimit = Math.min(maxDepth, DEPTHS - 1);
+        AISettings settings = createSettings(preset);
+        long start = System.nanoTime();
+        List<Sample> samples = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Sample>> searches = new ArrayList<>();
+            for (int p = 0; p < positionCount; p++) {
+                long seed = POSITIONS_SEED + p;
+                searches.add(() -> searchPosition(seed, settings, depthLimit));
+            }
+            for (Future<Sample> result : pool.invokeAll(searches)) {
+                Sample sample = result.get();
+                if (sample != null) {
+                    samples.add(sample);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println("Searched " + samples.size() + " positions to depth " + depthLimit + " in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+        float[][] slopes = new float[EMPTIES_BUCKETS][DEPTHS];
+        float[][] intercepts = new float[EMPTIES_BUCKETS][DEPTHS];
+        float[][] deviations = new float[EMPTIES_BUCKETS][DEPTHS];
+        for (int bucket = 0; bucket < EMPTIES_BUCKETS; bucket++) {
+            for (int depth = MIN_DEPTH; depth <= depthLimit; depth++) {
+                fit(samples, bucket, depth, slopes, intercepts, deviations);
+            }
+        }
+        writeParameters(slopes, intercepts, deviations, output);
+        System.out.println("Wrote " + output);
+    }
+
+    private static AISettings createSettings(String preset) {
+        int[] configurations = AISettingsLoader.getInstance().getLevelSettings(preset);
+        configurations = Arrays.copyOf(configurations, configurations.length);
+        AISettings settings = new AISettings(configurations);
+        settings.calculateBiasMatrix();
+        settings.setProbCutEnabled(false);
+        return settings;
+    }
+
+    /**
+     * Plays a seeded random game to a random number of empty squares and
+     * returns the score of every search depth there, or null when the game
+     * ended first.
+     */
+    private static Sample searchPosition(long seed, AISettings settings, int maxDepth) {
+        Random random = new Random(seed);
+        int targetEmpties = MIN_EMPTIES + random.nextInt(MAX_EMPTIES - MIN_EMPTIES + 1);
+        BitBoard board = new BitBoard(0x0000000810000000L, 0x0000001008000000L);
+        char playerToMove = BLACK;
+        while (board.getEmptyCount() > targetEmpties) {
+            long moves = board.getMoves();
+            if (moves == 0) {
+                board = board.pass();
+                playerToMove = (playerToMove == BLACK) ? (WHITE) : (BLACK);
+                moves = board.getMoves();
+                if (moves == 0) {
+                    return null;
+                }
+            }
+            for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                moves &= moves - 1;
+            }
+            board = board.play(Long.numberOfTrailingZeros(moves));
+            playerToMove = (playerToMove == BLACK) ? (WHITE) : (BLACK);
+        }
+        if (board.getMoves() == 0) {
+            return null;
+        }
+        TranspositionTable table = new TranspositionTable(settings.getHashSizeMB());
+        SearchEngine engine = new ReversiMiniMax(board, settings, playerToMove, table, null);
+        int[] scores = new int[maxDepth + 1];
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            scores[depth] = engine.search(depth, SearchEngine.NO_DEADLINE);
+        }
+        return new Sample(board.getEmptyCount(), scores);
+    }
+
+    private static void fit(List<Sample> samples, int bucket, int depth, float[][] slopes, float[][] intercepts,
+            float[][] deviations) {
+        int shallowDepth = getShallowDepth(depth);
+        double n = 0;
+        double sumX = 0;
+        double sumY = 0;
+        double sumXX = 0;
+        double sumXY = 0;
+        for (Sample sample : samples) {
+            if (getBucket(sample.empties) == bucket) {
+                double x = sample.scores[shallowDepth];
+                double y = sample.scores[depth];
+                n++;
+                sumX += x;
+                sumY += y;
+                sumXX += x * x;
+                sumXY += x * y;
+            }
+        }
+        double variance = n * sumXX - sumX * sumX;
+        if (n < MIN_SAMPLES || variance <= 0) {
+            return;
+        }
+        double slope = (n * sumXY - sumX * sumY) / variance;
+        double intercept = (sumY - slope * sumX) / n;
+        double squaredError = 0;
+        for (Sample sample : samples) {
+            if (getBucket(sample.empties) == bucket) {
+                double error = sample.scores[depth] - (slope * sample.scores[shallowDepth] + intercept);
+                squaredError += error * error;
+            }
+        }
+        double deviation = Math.sqrt(squaredError / (n - 2));
+        slopes[bucket][depth] = (float) slope;
+        intercepts[bucket][depth] = (float) intercept;
+        deviations[bucket][depth] = (float) deviation;
+        System.out.println(String.format("Empties %2d-%2d, depth %2d from %d: deep = %.3f * shallow %+.2f, sigma %.2f (%d positions)",
+                bucket * 10 + 1, bucket * 10 + 10, depth, shallowDepth, slope, intercept, deviation, (int) n));
+    }
+
+    private static void writeParameters(float[][] slopes, float[][] intercepts, float[][] deviations, String output)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(EMPTIES_BUCKETS);
+            out.writeInt(DEPTHS);
+            for (int bucket = 0; bucket < EMPTIES_BUCKETS; bucket++) {
+                for (int depth = 0; depth < DEPTHS; depth++) {
+                    out.writeFloat(slopes[bucket][depth]);
+                    out.writeFloat(intercepts[bucket][depth]);
+                    out.writeFloat(deviations[bucket][depth]);
+                }
+            }
+        }
+    }
+}
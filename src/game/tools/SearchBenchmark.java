@@ -0,0 +1,199 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package game.tools;
+
+import game.ai.EvaluationCache;
+import game.ai.IterativeDeepeningSearch;
+import game.ai.SearchEngine;
+import game.ai.SearchEngines;
+import game.ai.TranspositionTable;
+import game.config.AISettings;
+import game.config.AISettingsLoader;
+import game.core.BitBoard;
+import static game.core.ReversiGameAction.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs every search algorithm on the same set of positions to the same
+ * depth and prints nodes, time and speed side by side. Positions come from
+ * seeded random games, so every run sees the same ones. With more than one
+ * thread, PVS is also run with shared-hash helpers and with Young Brothers
+ * Wait splitting so both parallel strategies can be compared.
+ *
+ * Usage: SearchBenchmark [depth] [positions] [preset] [threads]
+ *
+ * @author filipe
+ */
+public class SearchBenchmark {
+
+    private static final long POSITIONS_SEED = 20170611L;
+
+    public static class Position {
+
+        public final BitBoard board;
+        public final char playerToMove;
+
+        public Position(BitBoard board, char playerToMove) {
+            this.board = board;
+            this.playerToMove = playerToMove;
+        }
+    }
+
+    public static void main(String[] args) {
+        int depth = (args.length > 0) ? (Integer.parseInt(args[0])) : (9);
+        int positionCount = (args.length > 1) ? (Integer.parseInt(args[1])) : (12);
+        String preset = (args.length > 2) ? (args[2]) : ("insane");
+        int threads = (args.length > 3) ? (Integer.parseInt(args[3])) : (Runtime.getRuntime().availableProcessors());
+        List<Position> positions = createPositions(positionCount, POSITIONS_SEED);
+        String[] algorithms = {SearchEngines.MINIMAX, SearchEngines.PVS};
+        List<String> labels = new ArrayList<>();
+        List<int[]> scores = new ArrayList<>();
+        for (String algorithm : algorithms) {
+            AISettings settings = createSettings(preset, depth);
+            settings.setSearchAlgorithm(algorithm);
+            labels.add(algorithm);
+            scores.add(runSuite(algorithm, settings, positions, depth));
+        }
+        if (threads > 1) {
+            for (String parallelSearch : new String[]{SearchEngines.SHARED_HASH, SearchEngines.YOUNG_BROTHERS_WAIT}) {
+                AISettings settings = createSettings(preset, depth);
+                settings.setSearchAlgorithm(SearchEngines.PVS);
+                settings.setThreadCount(threads);
+                settings.setParallelSearch(parallelSearch);
+                String label = SearchEngines.PVS + "+" + parallelSearch + " x" + threads;
+                labels.add(label);
+                scores.add(runParallelSuite(label, settings, positions, depth));
+            }
+        }
+        for (int p = 0; p < positions.size(); p++) {
+            for (int i = 1; i < labels.size(); i++) {
+                if (scores.get(i)[p] != scores.get(0)[p]) {
+                    System.out.println("Position " + p + ": " + labels.get(i) + " scored " + scores.get(i)[p]
+                            + " but " + labels.get(0) + " scored " + scores.get(0)[p]);
+                }
+            }
+        }
+    }
+
+    /**
+     * The preset's biases with a fixed depth, no time budget, no endgame
+     * solver and no ProbCut, so every suite searches the same trees and the
+     * engines must agree on every score.
+     */
+    private static AISettings createSettings(String preset, int depth) {
+        int[] configurations = AISettingsLoader.getInstance().getLevelSettings(preset);
+        configurations = Arrays.copyOf(configurations, configurations.length);
+        configurations[0] = depth;
+        AISettings settings = new AISettings(configurations);
+        settings.calculateBiasMatrix();
+        settings.setEndgameEmpties(0);
+        settings.setProbCutEnabled(false);
+        return settings;
+    }
+
+    private static int[] runSuite(String label, AISettings settings, List<Position> positions, int depth) {
+        int[] scores = new int[positions.size()];
+        long totalNodes = 0;
+        long totalTime = 0;
+        System.out.println("== " + label + ", depth " + depth + " ==");
+        for (int p = 0; p < positions.size(); p++) {
+            Position position = positions.get(p);
+            TranspositionTable table = new TranspositionTable(settings.getHashSizeMB());
+            EvaluationCache evaluationCache = new EvaluationCache(settings.getEvalCacheSizeMB());
+            SearchEngine engine = SearchEngines.create(position.board, settings, position.playerToMove, table,
+                    evaluationCache, null);
+            long start = System.nanoTime();
+            int score = 0;
+            for (int d = 1; d <= depth; d++) {
+                score = engine.search(d, SearchEngine.NO_DEADLINE);
+            }
+            long elapsed = System.nanoTime() - start;
+            scores[p] = score;
+            totalNodes += engine.getNodeCount();
+            totalTime += elapsed;
+            System.out.println(String.format("%3d  empties %2d  score %5d  move %2d  %10d nodes  %7d ms  %5.1f%% first-move cutoffs  %5.1f%% eval cache hits",
+                    p, position.board.getEmptyCount(), score, engine.getBestMove(), engine.getNodeCount(),
+                    elapsed / 1000000, 100 * engine.getFirstMoveCutoffRate(), 100 * evaluationCache.getHitRate()));
+        }
+        System.out.println(String.format("Total: %d nodes in %d ms, %.0f knodes/s", totalNodes, totalTime / 1000000,
+                totalNodes / Math.max(1.0, totalTime / 1000000.0)));
+        return scores;
+    }
+
+    /**
+     * Same as {@link #runSuite}, but through the game's own iterative
+     * deepening driver so helper threads or subtree splitting take part.
+     * Scores of the shared-hash search may differ from the serial ones at
+     * equal depth only when the helpers' deeper entries change the result.
+     */
+    private static int[] runParallelSuite(String label, AISettings settings, List<Position> positions, int depth) {
+        int[] scores = new int[positions.size()];
+        long totalNodes = 0;
+        long totalTime = 0;
+        System.out.println("== " + label + ", depth " + depth + " ==");
+        ExecutorService pool = SearchEngines.createThreadPool(settings);
+        try {
+            for (int p = 0; p < positions.size(); p++) {
+                Position position = positions.get(p);
+                TranspositionTable table = new TranspositionTable(settings.getHashSizeMB());
+                EvaluationCache evaluationCache = new EvaluationCache(settings.getEvalCacheSizeMB());
+                IterativeDeepeningSearch search = new IterativeDeepeningSearch(position.board, settings,
+                        position.playerToMove, table, evaluationCache, pool);
+                long start = System.nanoTime();
+                search.getBestMovement();
+                long elapsed = System.nanoTime() - start;
+                scores[p] = search.getScore();
+                totalNodes += search.getNodeCount();
+                totalTime += elapsed;
+                System.out.println(String.format("%3d  empties %2d  score %5d  %10d nodes  %7d ms",
+                        p, position.board.getEmptyCount(), scores[p], search.getNodeCount(), elapsed / 1000000));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println(String.format("Total: %d nodes in %d ms, %.0f knodes/s", totalNodes, totalTime / 1000000,
+                totalNodes / Math.max(1.0, totalTime / 1000000.0)));
+        return scores;
+    }
+
+    /**
+     * Plays seeded random games and keeps one position from each, spread
+     * between the opening and the late midgame.
+     */
+    public static List<Position> createPositions(int count, long seed) {
+        Random random = new Random(seed);
+        List<Position> positions = new ArrayList<>();
+        while (positions.size() < count) {
+            BitBoard board = new BitBoard(0x0000000810000000L, 0x0000001008000000L);
+            char playerToMove = BLACK;
+            int plies = 8 + random.nextInt(36);
+            for (int i = 0; i < plies; i++) {
+                long moves = board.getMoves();
+                if (moves == 0) {
+                    board = board.pass();
+                    moves = board.getMoves();
+                    if (moves == 0) {
+                        break;
+                    }
+                    playerToMove = (playerToMove == BLACK) ? (WHITE) : (BLACK);
+                }
+                for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+                    moves &= moves - 1;
+                }
+                board = board.play(Long.numberOfTrailingZeros(moves));
+                playerToMove = (playerToMove == BLACK) ? (WHITE) : (BLACK);
+            }
+            if (board.getMoves() != 0) {
+                positions.add(new Position(board, playerToMove));
+            }
+        }
+        return positions;
+    }
+}
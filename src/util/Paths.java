@@ -15,4 +15,7 @@ public class Paths {
     public static final String ICONS_DIR = ROOT_DIR + "res/icons/";
     public static final String SAVED_GAME_DIR = ROOT_DIR + "res/savegame/saved.ini";
     public static final String DEFAULT_CONFIG_DIR = ROOT_DIR + "res/savegame/default.ini";
+    public static final String OPENING_BOOK_DIR = ROOT_DIR + "res/savegame/book.bin";
+    public static final String PATTERN_WEIGHTS_DIR = ROOT_DIR + "res/savegame/weights.bin";
+    public static final String PROBCUT_DIR = ROOT_DIR + "res/savegame/probcut.bin";
 }
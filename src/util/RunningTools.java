@@ -10,12 +10,16 @@ package util;
  * @author filipe
  */
 public class RunningTools {
+
+    /**
+     * Sleeps for {@code millis} without holding a core. An interrupt ends the
+     * wait early and is kept on the thread for the caller to see.
+     */
     public static void holdOn(long millis) {
-        long ti = System.currentTimeMillis();
-        long tf;
-        do {
-            tf = System.currentTimeMillis();
-            System.out.print("");
-        } while (tf - ti < millis);
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
     }
 }